@@ -0,0 +1,64 @@
+package com.gboxsw.acpmod.registry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Benchmarks of scheduling of updates in {@link AutoUpdater} managing
+ * thousands of registers, a given fraction of them requires update. Each
+ * operation is a scheduling pass that finds expired registers and schedules
+ * them again.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AutoUpdaterBenchmark {
+
+	@Param({ "1000", "10000" })
+	public int registerCount;
+
+	@Param({ "0", "100" })
+	public int expiredRegisterCount;
+
+	private AutoUpdater autoUpdater;
+
+	private final List<Register> expiredRegisters = new ArrayList<>();
+
+	@Setup
+	public void setup() {
+		GepGateway gateway = new GepGateway(new SimulatedRegistry(1), 0, true);
+		RegisterCollection registerCollection = gateway.getRegisterCollection(1);
+
+		List<Register> registers = new ArrayList<>();
+		for (int i = 0; i < registerCount; i++) {
+			Register register = new Register(registerCollection, i, true, new NumberCodec(1, 0, 0));
+			register.updateValue(i);
+			register.setUpdateInterval((i < expiredRegisterCount) ? 1 : TimeUnit.HOURS.toMillis(1));
+			registers.add(register);
+		}
+
+		// the gateway is not started, hence requests of the update thread
+		// fail immediately without occupying the benchmark thread
+		autoUpdater = new AutoUpdater();
+		autoUpdater.addRegisters(registers);
+	}
+
+	@TearDown
+	public void tearDown() {
+		autoUpdater.removeAllRegisters();
+	}
+
+	@Benchmark
+	public List<Register> findExpiredRegisters() {
+		expiredRegisters.clear();
+		autoUpdater.getScheduler().findExpiredRegisters(expiredRegisters);
+		autoUpdater.getScheduler().scheduleRegisters(expiredRegisters);
+		return expiredRegisters;
+	}
+}
@@ -0,0 +1,79 @@
+package com.gboxsw.acpmod.registry;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Benchmarks of codecs transforming local values to remote values and vice
+ * versa.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CodecBenchmark {
+
+	private final NumberCodec integerCodec = new NumberCodec(1, 0, 0);
+
+	private final NumberCodec decimalCodec = new NumberCodec(0.1, -40, 1);
+
+	private final HexBinaryCodec hexCodec = new HexBinaryCodec(0, 16, true);
+
+	private final byte[] binaryValue = { 0x01, 0x23, 0x45, 0x67, (byte) 0x89, (byte) 0xAB, (byte) 0xCD, (byte) 0xEF };
+
+	private Object integerValue;
+
+	private Object decimalValue;
+
+	private Object hexValue;
+
+	@Setup
+	public void setup() {
+		integerValue = integerCodec.decodeRemoteIntValue(1234);
+		decimalValue = decimalCodec.decodeRemoteIntValue(1234);
+		hexValue = hexCodec.decodeRemoteBinaryValue(binaryValue);
+	}
+
+	@Benchmark
+	public Object decodeInteger() {
+		return integerCodec.decodeRemoteIntValue(1234);
+	}
+
+	@Benchmark
+	public int encodeInteger() {
+		return integerCodec.encodeToIntValue(integerValue);
+	}
+
+	@Benchmark
+	public Object decodeDecimal() {
+		return decimalCodec.decodeRemoteIntValue(1234);
+	}
+
+	@Benchmark
+	public int encodeDecimal() {
+		return decimalCodec.encodeToIntValue(decimalValue);
+	}
+
+	@Benchmark
+	public Object decodeBoolean() {
+		return BooleanCodec.INSTANCE.decodeRemoteIntValue(1);
+	}
+
+	@Benchmark
+	public int encodeBoolean() {
+		return BooleanCodec.INSTANCE.encodeToIntValue(Boolean.TRUE);
+	}
+
+	@Benchmark
+	public Object decodeHexBinary() {
+		return hexCodec.decodeRemoteBinaryValue(binaryValue);
+	}
+
+	@Benchmark
+	public byte[] encodeHexBinary() {
+		return hexCodec.encodeToBinaryValue(hexValue);
+	}
+}
@@ -0,0 +1,52 @@
+package com.gboxsw.acpmod.registry;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Benchmarks of complete requests sent by {@link GepGateway} to a
+ * {@link SimulatedRegistry} without latency. The result reflects the CPU cost
+ * of a request including encoding, dispatching and decoding.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GatewayRoundTripBenchmark {
+
+	private static final long TIMEOUT = 1000;
+
+	private GepGateway gateway;
+
+	private RegisterCollection registerCollection;
+
+	@Setup
+	public void setup() {
+		SimulatedRegistry registry = new SimulatedRegistry(1);
+		for (int i = 0; i < 16; i++) {
+			registry.setIntegerRegister(i, i * 1000);
+		}
+
+		gateway = new GepGateway(registry, 0, true);
+		gateway.start();
+		registerCollection = gateway.getRegisterCollection(1);
+	}
+
+	@TearDown
+	public void tearDown() throws InterruptedException {
+		gateway.stop(true);
+	}
+
+	@Benchmark
+	public int readIntegerRegister() {
+		return registerCollection.readIntegerRegister(5, TIMEOUT);
+	}
+
+	@Benchmark
+	public void writeIntegerRegister() {
+		registerCollection.writeIntegerRegister(5, 5000, TIMEOUT);
+	}
+}
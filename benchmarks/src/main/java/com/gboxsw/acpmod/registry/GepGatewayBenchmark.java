@@ -0,0 +1,54 @@
+package com.gboxsw.acpmod.registry;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Benchmarks of building requests and of encoding and decoding of numbers in
+ * GEP messages.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GepGatewayBenchmark {
+
+	@Param({ "5", "-1000", "2000000000" })
+	public int value;
+
+	@Param({ "10", "1000" })
+	public int registerId;
+
+	private byte[] encodedValue;
+
+	private byte[] payload;
+
+	@Setup
+	public void setup() {
+		encodedValue = GepGateway.encodeNumber(value);
+		payload = GepGateway.encodeNumber(value);
+	}
+
+	@Benchmark
+	public byte[] buildReadRequest() {
+		return GepGateway.buildRequest(0x01, registerId, null);
+	}
+
+	@Benchmark
+	public byte[] buildWriteRequest() {
+		return GepGateway.buildRequest(0x02, registerId, payload);
+	}
+
+	@Benchmark
+	public byte[] encodeNumber() {
+		return GepGateway.encodeNumber(value);
+	}
+
+	@Benchmark
+	public int decodeNumber() {
+		return GepGateway.decodeNumber(encodedValue, 0);
+	}
+}
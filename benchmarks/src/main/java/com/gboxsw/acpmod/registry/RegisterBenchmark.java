@@ -0,0 +1,55 @@
+package com.gboxsw.acpmod.registry;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Benchmarks of updating and reading the local value of a register by
+ * concurrent threads. Values are updated without sending requests.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RegisterBenchmark {
+
+	private Register register;
+
+	private int counter;
+
+	@Setup
+	public void setup() {
+		GepGateway gateway = new GepGateway(new SimulatedRegistry(1), 0, true);
+		register = new Register(gateway.getRegisterCollection(1), 1, false, new NumberCodec(1, 0, 0));
+		register.setChangeListener(new Register.ChangeListener() {
+			@Override
+			public void onChange(Register register) {
+				// the listener is notified about each change
+			}
+		});
+	}
+
+	@Benchmark
+	@Group("uncontended")
+	@GroupThreads(1)
+	public void updateValue() {
+		register.updateValue(counter++);
+	}
+
+	@Benchmark
+	@Group("contended")
+	@GroupThreads(1)
+	public void contendedUpdateValue() {
+		register.updateValue(counter++);
+	}
+
+	@Benchmark
+	@Group("contended")
+	@GroupThreads(3)
+	public Object contendedGetValue() {
+		return register.getValue();
+	}
+}
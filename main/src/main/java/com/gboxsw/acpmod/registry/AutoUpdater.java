@@ -1,23 +1,16 @@
 package com.gboxsw.acpmod.registry;
 
-import java.lang.ref.WeakReference;
 import java.util.*;
 
 /**
- * Controller that manages updates of registers.
+ * Controller that manages updates of registers. Registers are updated by an
+ * update scheduler. By default, each updater uses its own scheduler. Updaters
+ * constructed with a shared scheduler (e.g.,
+ * {@link UpdateScheduler#getSharedInstance()}) update each register only once
+ * regardless of the number of updaters managing the register.
  */
 public class AutoUpdater {
 
-	/**
-	 * Name of the update thread.
-	 */
-	private static final String THREAD_NAME = "Registry auto-update";
-
-	/**
-	 * Maximal duration of sleep in the update thread in milliseconds.
-	 */
-	private static final long MAX_THREAD_SLEEP = 100;
-
 	/**
 	 * Strategy that determines when hint requests are generated.
 	 */
@@ -62,6 +55,18 @@ public class AutoUpdater {
 		 */
 		private HintStrategy strategy = HintStrategy.SEMI_GREEDY;
 
+		/**
+		 * Maximal number of hints retrieved by a single hint request.
+		 */
+		private int maxHints = 1;
+
+		/**
+		 * Indicates whether hint requests retrieve values of changed
+		 * registers, i.e., whether a hint request reads and confirms changed
+		 * registers in a single exchange.
+		 */
+		private boolean hintValues = false;
+
 		/**
 		 * Returns time between two hint readings (depending on strategy).
 		 * 
@@ -132,61 +137,78 @@ public class AutoUpdater {
 		}
 
 		/**
-		 * Creates clone.
+		 * Returns the maximal number of hints retrieved by a single hint
+		 * request.
 		 * 
-		 * @return the clone.
+		 * @return the maximal number of hints.
 		 */
-		private HintSettings createClone() {
-			HintSettings result = new HintSettings();
-			result.timeout = timeout;
-			result.interval = interval;
-			result.strategy = strategy;
-			return result;
+		public int getMaxHints() {
+			return maxHints;
 		}
-	}
 
-	/**
-	 * State record related to registers of a register collection.
-	 */
-	private static class CollectionState {
 		/**
-		 * Collection of registers whose state is recorded.
+		 * Sets the maximal number of hints retrieved by a single hint request.
+		 * If the value is greater than 1, a burst of changes is retrieved by a
+		 * single request (registries that do not support multiple hints are
+		 * handled as registries returning a single hint).
+		 * 
+		 * @param maxHints
+		 *            the maximal number of hints (at most 255).
 		 */
-		final WeakReference<RegisterCollection> registerCollection;
+		public void setMaxHints(int maxHints) {
+			if (maxHints <= 0) {
+				throw new IllegalArgumentException("Maximal number of hints must be a positive number.");
+			}
 
-		/**
-		 * Time of last reading of a register hint.
-		 */
-		long lastHintTime;
+			if (maxHints > 255) {
+				throw new IllegalArgumentException("Maximal number of hints cannot exceed 255.");
+			}
 
-		/**
-		 * Configuration of method for retrieving update hints or null, if use
-		 * of hints is disabled.
-		 */
-		HintSettings hintSettings;
+			this.maxHints = maxHints;
+		}
 
 		/**
-		 * Identifier of register that was notified as changed but is not
-		 * managed (updated) by this updater.
+		 * Returns whether hint requests retrieve values of changed registers.
+		 * 
+		 * @return true, if values are retrieved, false otherwise.
 		 */
-		int unconfirmedRegisterId;
+		public boolean isHintValues() {
+			return hintValues;
+		}
 
 		/**
-		 * Managed registers of the collection.
+		 * Sets whether hint requests retrieve values of changed registers. If
+		 * enabled, a hint request returns identifiers of changed registers
+		 * together with their current values and the registry marks the
+		 * registers as read in the same exchange. Values retrieved in
+		 * hints are applied to managed registers without separate read
+		 * requests and changes of unmanaged registers need not be confirmed
+		 * by subsequent hint requests. If a registry rejects such requests,
+		 * the registry is queried by simple hint requests and changed
+		 * registers are read separately. The option is disabled by default,
+		 * since requests ignored by a registry (i.e., timed out requests) do
+		 * not switch the registry to simple hint requests.
+		 * 
+		 * @param hintValues
+		 *            true, if values are retrieved, false otherwise.
 		 */
-		final List<Register> registers = new ArrayList<>();
+		public void setHintValues(boolean hintValues) {
+			this.hintValues = hintValues;
+		}
 
 		/**
-		 * Constructs data structure for managing registry hints.
+		 * Creates clone.
 		 * 
-		 * @param collection
-		 *            the register collection.
+		 * @return the clone.
 		 */
-		public CollectionState(RegisterCollection collection, HintSettings hintSettings) {
-			this.registerCollection = new WeakReference<RegisterCollection>(collection);
-			this.hintSettings = hintSettings;
-			this.unconfirmedRegisterId = -1;
-			lastHintTime = MonotonicClock.INSTANCE.currentTimeMillis();
+		HintSettings createClone() {
+			HintSettings result = new HintSettings();
+			result.timeout = timeout;
+			result.interval = interval;
+			result.strategy = strategy;
+			result.maxHints = maxHints;
+			result.hintValues = hintValues;
+			return result;
 		}
 	}
 
@@ -196,162 +218,47 @@ public class AutoUpdater {
 	private final Object lock = new Object();
 
 	/**
-	 * Set of managed registers.
-	 */
-	private final Set<Register> registers = new HashSet<Register>();
-
-	/**
-	 * Map that assigns to each registry collection its state data.
+	 * The scheduler that updates registers.
 	 */
-	private final WeakHashMap<RegisterCollection, CollectionState> collectionStates = new WeakHashMap<>();
+	private final UpdateScheduler scheduler;
 
 	/**
-	 * Thread realizing periodical update of managed registers.
+	 * Set of managed registers.
 	 */
-	private Thread updateThread;
+	private final Set<Register> registers = new HashSet<Register>();
 
 	/**
-	 * Constructs a new register manager.
+	 * Constructs a new register manager with its own scheduler. The updater
+	 * does not share worker threads with other updaters, but it updates
+	 * registers of at most {@link UpdateScheduler#MAX_WORKER_THREADS} gateways
+	 * in parallel. If more gateways are slow at the same time, updates of
+	 * remaining gateways wait until a worker thread is available.
 	 */
 	public AutoUpdater() {
-		// nothing to do
+		this(new UpdateScheduler());
 	}
 
 	/**
-	 * The updating subroutine (loop).
+	 * Constructs a new register manager that uses given scheduler.
+	 * 
+	 * @param scheduler
+	 *            the scheduler that updates registers.
 	 */
-	private void mainLoop() {
-		final Thread thisThread = Thread.currentThread();
-		final ArrayList<Register> expiredRegisters = new ArrayList<Register>();
-		final ArrayList<CollectionState> collectionsWithExpiredHints = new ArrayList<CollectionState>();
-
-		while (true) {
-			expiredRegisters.clear();
-			collectionsWithExpiredHints.clear();
-			long nextUpdate = Long.MAX_VALUE;
-
-			synchronized (lock) {
-				// check whether the update thread is active
-				if (thisThread != updateThread) {
-					break;
-				}
-
-				// find registers that require update
-				for (Register register : registers) {
-					long millisToUpdate = register.millisToNextUpdate();
-					if (millisToUpdate <= 0) {
-						expiredRegisters.add(register);
-					} else {
-						nextUpdate = Math.min(nextUpdate, millisToUpdate);
-					}
-				}
-
-				// find register collections with active hints that require
-				// update
-				long now = MonotonicClock.INSTANCE.currentTimeMillis();
-				for (CollectionState cs : collectionStates.values()) {
-					if ((!cs.registers.isEmpty()) && (cs.hintSettings != null)) {
-						long millisToUpdate = cs.hintSettings.interval - (now - cs.lastHintTime);
-						if (millisToUpdate <= 0) {
-							collectionsWithExpiredHints.add(cs);
-						} else {
-							nextUpdate = Math.min(nextUpdate, millisToUpdate);
-						}
-					}
-				}
-
-				// wait given amount of time if there are no expired registers
-				// or pending hint requests
-				if (expiredRegisters.isEmpty() && collectionsWithExpiredHints.isEmpty()) {
-					try {
-						synchronized (lock) {
-							lock.wait(Math.min(nextUpdate, MAX_THREAD_SLEEP));
-						}
-					} catch (InterruptedException ignore) {
-						// ignored exception
-					}
-
-					continue;
-				}
-			}
-
-			// execute hint updates
-			for (CollectionState cs : collectionsWithExpiredHints) {
-				// retrieve timeout, id of unconfirmed register, and register
-				// collections
-				long operationTimeout;
-				int unconfirmedRegisterId;
-				HintStrategy hintStrategy;
-
-				RegisterCollection registerCollection;
-				synchronized (lock) {
-					if (cs.hintSettings == null) {
-						continue;
-					}
-
-					operationTimeout = cs.hintSettings.timeout;
-					unconfirmedRegisterId = cs.unconfirmedRegisterId;
-					cs.unconfirmedRegisterId = -1;
-					registerCollection = cs.registerCollection.get();
-					hintStrategy = cs.hintSettings.strategy;
-					if (registerCollection == null) {
-						cs.hintSettings = null;
-						continue;
-					}
-				}
-
-				// execute hint request
-				int hintId = -1;
-				try {
-					hintId = registerCollection.getChangeHintId(unconfirmedRegisterId, operationTimeout);
-					if (hintId < 0) {
-						hintId = -1;
-					}
-				} catch (Exception ignore) {
-					// in case of failure, hint request is skipped
-				}
+	public AutoUpdater(UpdateScheduler scheduler) {
+		if (scheduler == null) {
+			throw new NullPointerException("Scheduler cannot be null.");
+		}
 
-				// update timestamp of the last hint update and add all
-				// registers with given register id to expired registers
-				synchronized (lock) {
-					boolean hintForManagedRegister = false;
-					if (hintId >= 0) {
-						for (Register register : cs.registers) {
-							if (register.getRegisterId() == hintId) {
-								hintForManagedRegister = true;
-								if (!expiredRegisters.contains(register)) {
-									expiredRegisters.add(register);
-								}
-							}
-						}
-
-						if (!hintForManagedRegister) {
-							cs.unconfirmedRegisterId = hintId;
-						}
-					}
-
-					// set time of last hint with respect to utilized strategy
-					// (if time is not updated, new hint request is generated
-					// in the next iteration of the main loop)
-					if (hintStrategy == HintStrategy.SIMPLE) {
-						cs.lastHintTime = MonotonicClock.INSTANCE.currentTimeMillis();
-					} else if (hintStrategy == HintStrategy.SEMI_GREEDY) {
-						if (!hintForManagedRegister) {
-							cs.lastHintTime = MonotonicClock.INSTANCE.currentTimeMillis();
-						}
-					} else if (hintStrategy == HintStrategy.GREEDY) {
-						if (hintId < 0) {
-							cs.lastHintTime = MonotonicClock.INSTANCE.currentTimeMillis();
-						}
-					}
-				}
-			}
+		this.scheduler = scheduler;
+	}
 
-			// update registers if necessary
-			for (Register register : expiredRegisters) {
-				register.updateValue();
-			}
-		}
+	/**
+	 * Returns the scheduler that updates registers.
+	 * 
+	 * @return the scheduler.
+	 */
+	public UpdateScheduler getScheduler() {
+		return scheduler;
 	}
 
 	/**
@@ -378,31 +285,15 @@ public class AutoUpdater {
 		}
 
 		synchronized (lock) {
-			boolean changed = false;
+			List<Register> addedRegisters = new ArrayList<>();
 			for (Register register : registers) {
-				if (register == null) {
-					continue;
-				}
-
-				if (this.registers.add(register)) {
-					changed = true;
-
-					// create collection state if necessary
-					RegisterCollection registerCollection = register.getRegisterCollection();
-					CollectionState collectionState = collectionStates.get(registerCollection);
-					if (collectionState == null) {
-						collectionState = new CollectionState(registerCollection, null);
-						collectionStates.put(registerCollection, collectionState);
-					}
-
-					// add register to registers of underlying collection state
-					collectionState.registers.add(register);
+				if ((register != null) && this.registers.add(register)) {
+					addedRegisters.add(register);
 				}
 			}
 
-			if (changed) {
-				createOrDestroyUpdateThread();
-				lock.notifyAll();
+			if (!addedRegisters.isEmpty()) {
+				scheduler.addRegisters(addedRegisters);
 			}
 		}
 	}
@@ -416,13 +307,8 @@ public class AutoUpdater {
 				return;
 			}
 
+			scheduler.removeRegisters(registers);
 			registers.clear();
-			for (CollectionState collectionState : collectionStates.values()) {
-				collectionState.registers.clear();
-			}
-
-			lock.notifyAll();
-			createOrDestroyUpdateThread();
 		}
 	}
 
@@ -438,24 +324,15 @@ public class AutoUpdater {
 		}
 
 		synchronized (lock) {
-			boolean changed = false;
+			List<Register> removedRegisters = new ArrayList<>();
 			for (Register register : registers) {
-				if (register == null) {
-					continue;
-				}
-
-				if (!this.registers.remove(register)) {
-					continue;
+				if ((register != null) && this.registers.remove(register)) {
+					removedRegisters.add(register);
 				}
-
-				CollectionState collectionState = collectionStates.get(register.getRegisterCollection());
-				collectionState.registers.remove(register);
-				changed = true;
 			}
 
-			if (changed) {
-				lock.notifyAll();
-				createOrDestroyUpdateThread();
+			if (!removedRegisters.isEmpty()) {
+				scheduler.removeRegisters(removedRegisters);
 			}
 		}
 	}
@@ -500,18 +377,7 @@ public class AutoUpdater {
 			throw new NullPointerException("Hint settings cannot be null.");
 		}
 
-		synchronized (lock) {
-			CollectionState collectionState = collectionStates.get(registerCollection);
-			if (collectionState == null) {
-				collectionState = new CollectionState(registerCollection, settings.createClone());
-				collectionStates.put(registerCollection, collectionState);
-			} else {
-				collectionState.hintSettings = settings.createClone();
-				collectionState.unconfirmedRegisterId = -1;
-			}
-
-			lock.notifyAll();
-		}
+		scheduler.useRegistryHints(this, registerCollection, settings.createClone());
 	}
 
 	/**
@@ -526,43 +392,181 @@ public class AutoUpdater {
 			return;
 		}
 
-		synchronized (lock) {
-			CollectionState collectionState = collectionStates.get(registerCollection);
-			if (collectionState != null) {
-				collectionState.hintSettings = null;
-				collectionState.unconfirmedRegisterId = -1;
+		scheduler.disableRegistryHints(this, registerCollection);
+	}
 
-				if (collectionState.registers.isEmpty()) {
-					collectionStates.remove(registerCollection);
-				}
-			}
+	/**
+	 * Returns the statistics of the scheduler. The statistics cover all
+	 * updaters using the scheduler.
+	 * 
+	 * @return the statistics.
+	 */
+	public UpdaterStatistics getStatistics() {
+		return scheduler.getStatistics();
+	}
 
-			lock.notifyAll();
+	/**
+	 * Returns the staleness of a managed register, i.e., the time elapsed
+	 * since the last update of its value.
+	 * 
+	 * @param register
+	 *            the register.
+	 * @return the time in milliseconds or -1, if the register is not managed by
+	 *         the updater or its value has never been updated.
+	 */
+	public long getStaleness(Register register) {
+		synchronized (lock) {
+			if (!registers.contains(register)) {
+				return -1;
+			}
 		}
+
+		return scheduler.getStaleness(register);
 	}
 
 	/**
-	 * Creates or destroys the update thread. This method must be invoked from
-	 * thread holding the lock.
+	 * Returns the number of overdue registers managed by the scheduler.
+	 * 
+	 * @return the number of overdue registers.
+	 * @see UpdateScheduler#getOverdueRegisterCount()
 	 */
-	private void createOrDestroyUpdateThread() {
-		// stop update thread, if the list of managed registers is empty
-		if (registers.isEmpty() && (updateThread != null)) {
-			updateThread.interrupt();
-			updateThread = null;
-			return;
-		}
+	public int getOverdueRegisterCount() {
+		return scheduler.getOverdueRegisterCount();
+	}
 
-		// create update thread, if required.
-		if ((!registers.isEmpty()) && (updateThread == null)) {
-			updateThread = new Thread(new Runnable() {
-				@Override
-				public void run() {
-					mainLoop();
-				}
-			}, THREAD_NAME);
-			updateThread.setDaemon(true);
-			updateThread.start();
-		}
+	/**
+	 * Sets the budget of requests to a gateway. The budget is applied by the
+	 * scheduler, i.e., to all updaters using the scheduler.
+	 * 
+	 * @param gateway
+	 *            the gateway.
+	 * @param rateLimit
+	 *            the rate limit or null, if the number of requests should not
+	 *            be limited.
+	 * @see UpdateScheduler#setRateLimit(Gateway, RateLimit)
+	 */
+	public void setRateLimit(Gateway gateway, RateLimit rateLimit) {
+		scheduler.setRateLimit(gateway, rateLimit);
+	}
+
+	/**
+	 * Returns the budget of requests to a gateway.
+	 * 
+	 * @param gateway
+	 *            the gateway.
+	 * @return the rate limit or null, if the number of requests is not
+	 *         limited.
+	 */
+	public RateLimit getRateLimit(Gateway gateway) {
+		return scheduler.getRateLimit(gateway);
+	}
+
+	/**
+	 * Sets the budget of requests to a register collection. The budget is
+	 * applied by the scheduler, i.e., to all updaters using the scheduler.
+	 * 
+	 * @param registerCollection
+	 *            the register collection.
+	 * @param rateLimit
+	 *            the rate limit or null, if the number of requests should not
+	 *            be limited.
+	 * @see UpdateScheduler#setRateLimit(RegisterCollection, RateLimit)
+	 */
+	public void setRateLimit(RegisterCollection registerCollection, RateLimit rateLimit) {
+		scheduler.setRateLimit(registerCollection, rateLimit);
+	}
+
+	/**
+	 * Returns the budget of requests to a register collection.
+	 * 
+	 * @param registerCollection
+	 *            the register collection.
+	 * @return the rate limit or null, if the number of requests is not
+	 *         limited.
+	 */
+	public RateLimit getRateLimit(RegisterCollection registerCollection) {
+		return scheduler.getRateLimit(registerCollection);
+	}
+
+	/**
+	 * Returns whether updates of added registers are spread over their update
+	 * intervals.
+	 * 
+	 * @return true, if phase spreading is enabled, false otherwise.
+	 */
+	public boolean isPhaseSpreading() {
+		return scheduler.isPhaseSpreading();
+	}
+
+	/**
+	 * Enables or disables spreading of updates of added registers. The
+	 * setting is applied by the scheduler, i.e., to all updaters using the
+	 * scheduler.
+	 * 
+	 * @param phaseSpreading
+	 *            true, to spread updates, false to keep updates of added
+	 *            registers aligned with their first updates.
+	 * @see UpdateScheduler#setPhaseSpreading(boolean)
+	 */
+	public void setPhaseSpreading(boolean phaseSpreading) {
+		scheduler.setPhaseSpreading(phaseSpreading);
+	}
+
+	/**
+	 * Returns the maximal random delay of scheduled updates as a fraction of
+	 * update interval.
+	 * 
+	 * @return the fraction of update interval.
+	 */
+	public double getJitter() {
+		return scheduler.getJitter();
+	}
+
+	/**
+	 * Sets the maximal random delay of scheduled updates as a fraction of
+	 * update interval. The setting is applied by the scheduler, i.e., to all
+	 * updaters using the scheduler.
+	 * 
+	 * @param jitter
+	 *            the fraction of update interval between 0 (no jitter) and 1.
+	 * @see UpdateScheduler#setJitter(double)
+	 */
+	public void setJitter(double jitter) {
+		scheduler.setJitter(jitter);
+	}
+
+	/**
+	 * Returns whether the platform supports virtual threads, i.e., whether
+	 * the updater can use virtual threads.
+	 * 
+	 * @return true, if virtual threads are supported, false otherwise.
+	 */
+	public static boolean isVirtualThreadSupported() {
+		return UpdateScheduler.isVirtualThreadSupported();
+	}
+
+	/**
+	 * Returns whether registers are updated in virtual threads.
+	 * 
+	 * @return true, if virtual threads are used, false otherwise.
+	 */
+	public boolean isUsingVirtualThreads() {
+		return scheduler.isUsingVirtualThreads();
+	}
+
+	/**
+	 * Enables or disables updating of registers in virtual threads. The
+	 * setting is applied by the scheduler, i.e., to all updaters using the
+	 * scheduler.
+	 * 
+	 * @param enabled
+	 *            true, to update registers in virtual threads, false to use
+	 *            platform threads.
+	 * @throws UnsupportedOperationException
+	 *             if virtual threads are not supported by the platform.
+	 * @see UpdateScheduler#setUsingVirtualThreads(boolean)
+	 */
+	public void setUsingVirtualThreads(boolean enabled) {
+		scheduler.setUsingVirtualThreads(enabled);
 	}
 }
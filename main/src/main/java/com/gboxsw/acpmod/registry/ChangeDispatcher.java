@@ -0,0 +1,147 @@
+package com.gboxsw.acpmod.registry;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Dispatcher that delivers change events of registers to their listeners
+ * asynchronously using an executor, hence slow listeners do not delay updates
+ * of registers. Changes of a register are coalesced, i.e., if the value of
+ * register changes multiple times before the listener is invoked, the
+ * listener is invoked only once and observes the latest value. Listeners of a
+ * register are never invoked concurrently. A dispatcher can be shared by
+ * multiple registers. All methods are implemented as thread-safe.
+ * 
+ * <p>
+ * If the executor rejects a delivery (e.g., a bounded or shut down executor),
+ * the delivery is executed inline by the thread that updated the register,
+ * typically a worker of {@link AutoUpdater}. In that case, a slow listener
+ * delays updates of registers again, hence the executor should not reject
+ * deliveries.
+ *
+ * @see Register#setChangeDispatcher(ChangeDispatcher)
+ */
+public class ChangeDispatcher {
+
+	/**
+	 * Executor that invokes listeners.
+	 */
+	private final Executor executor;
+
+	/**
+	 * Histogram of delays between changes of registers and invocations of
+	 * their listeners.
+	 */
+	private final LatencyHistogram dispatchLags = new LatencyHistogram();
+
+	/**
+	 * Number of delivered change events.
+	 */
+	private final LongAdder deliveredChanges = new LongAdder();
+
+	/**
+	 * Number of changes coalesced with a change waiting for delivery.
+	 */
+	private final LongAdder coalescedChanges = new LongAdder();
+
+	/**
+	 * Constructs the dispatcher.
+	 * 
+	 * @param executor
+	 *            the executor that invokes listeners.
+	 */
+	public ChangeDispatcher(Executor executor) {
+		if (executor == null) {
+			throw new NullPointerException("Executor cannot be null.");
+		}
+
+		this.executor = executor;
+	}
+
+	/**
+	 * Returns the executor that invokes listeners.
+	 * 
+	 * @return the executor.
+	 */
+	public Executor getExecutor() {
+		return executor;
+	}
+
+	/**
+	 * Executes a delivery of change events. If the executor rejects the
+	 * delivery, the delivery is executed in the calling thread, i.e., the
+	 * thread that completed the update of register is blocked until all
+	 * listeners return.
+	 * 
+	 * @param delivery
+	 *            the delivery.
+	 */
+	void dispatch(Runnable delivery) {
+		try {
+			executor.execute(delivery);
+		} catch (RejectedExecutionException e) {
+			delivery.run();
+		}
+	}
+
+	/**
+	 * Records a delivered change event.
+	 * 
+	 * @param lagNanos
+	 *            the delay between the change and invocation of the listener
+	 *            in nanoseconds.
+	 */
+	void recordDelivery(long lagNanos) {
+		deliveredChanges.increment();
+		dispatchLags.record(lagNanos / 1000);
+	}
+
+	/**
+	 * Records a change coalesced with a change waiting for delivery.
+	 */
+	void recordCoalescedChange() {
+		coalescedChanges.increment();
+	}
+
+	/**
+	 * Returns the histogram of delays between changes of registers and
+	 * invocations of their listeners. The delay of coalesced changes is
+	 * measured from the first change.
+	 * 
+	 * @return the snapshot of histogram with delays in microseconds.
+	 */
+	public LatencyHistogram getDispatchLags() {
+		return dispatchLags.createSnapshot();
+	}
+
+	/**
+	 * Returns the number of delivered change events.
+	 * 
+	 * @return the number of change events.
+	 */
+	public long getDeliveredChanges() {
+		return deliveredChanges.sum();
+	}
+
+	/**
+	 * Returns the number of changes coalesced with a change waiting for
+	 * delivery, i.e., the number of changes not delivered because the
+	 * listener fell behind.
+	 * 
+	 * @return the number of coalesced changes.
+	 */
+	public long getCoalescedChanges() {
+		return coalescedChanges.sum();
+	}
+
+	/**
+	 * Resets statistics. Values recorded concurrently with reset may or may
+	 * not be preserved.
+	 */
+	public void reset() {
+		dispatchLags.reset();
+		deliveredChanges.reset();
+		coalescedChanges.reset();
+	}
+}
@@ -0,0 +1,94 @@
+package com.gboxsw.acpmod.registry;
+
+/**
+ * Change hint retrieved from a register collection, i.e., the identifier of a
+ * register whose value has been changed but not read, optionally with the
+ * current value of the register. Remote registry does not declare the type of
+ * register, hence a hint with value provides the value decoded as value of an
+ * integer register (if possible) and as value of a binary register.
+ */
+public final class ChangeHint {
+
+	/**
+	 * Identifier of the changed register.
+	 */
+	private final int registerId;
+
+	/**
+	 * Value of the register decoded as value of an integer register or null,
+	 * if the value is not available or cannot be decoded.
+	 */
+	private final Integer integerValue;
+
+	/**
+	 * Value of the register decoded as value of a binary register or null, if
+	 * the value is not available.
+	 */
+	private final byte[] binaryValue;
+
+	/**
+	 * Constructs a change hint without value.
+	 * 
+	 * @param registerId
+	 *            the identifier of the changed register.
+	 */
+	public ChangeHint(int registerId) {
+		this(registerId, null, null);
+	}
+
+	/**
+	 * Constructs a change hint.
+	 * 
+	 * @param registerId
+	 *            the identifier of the changed register.
+	 * @param integerValue
+	 *            the value decoded as value of an integer register or null,
+	 *            if not available.
+	 * @param binaryValue
+	 *            the value decoded as value of a binary register or null, if
+	 *            not available.
+	 */
+	public ChangeHint(int registerId, Integer integerValue, byte[] binaryValue) {
+		this.registerId = registerId;
+		this.integerValue = integerValue;
+		this.binaryValue = (binaryValue != null) ? binaryValue.clone() : null;
+	}
+
+	/**
+	 * Returns the identifier of the changed register.
+	 * 
+	 * @return the identifier of register.
+	 */
+	public int getRegisterId() {
+		return registerId;
+	}
+
+	/**
+	 * Returns whether the hint contains the current value of the register.
+	 * 
+	 * @return true, if the value is available, false otherwise.
+	 */
+	public boolean hasValue() {
+		return (integerValue != null) || (binaryValue != null);
+	}
+
+	/**
+	 * Returns the value of the register decoded as value of an integer
+	 * register.
+	 * 
+	 * @return the value or null, if the value is not available or it is not a
+	 *         value of an integer register.
+	 */
+	public Integer getIntegerValue() {
+		return integerValue;
+	}
+
+	/**
+	 * Returns the value of the register decoded as value of a binary register.
+	 * 
+	 * @return the value or null, if the value is not available.
+	 */
+	public byte[] getBinaryValue() {
+		return (binaryValue != null) ? binaryValue.clone() : null;
+	}
+}
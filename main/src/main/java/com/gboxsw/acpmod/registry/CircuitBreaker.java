@@ -0,0 +1,151 @@
+package com.gboxsw.acpmod.registry;
+
+/**
+ * Circuit breaker that stops sending of requests to an unresponsive registry.
+ * After a given number of consecutive failed requests, the breaker opens and
+ * rejects all requests. When the probe interval elapses, a single probe
+ * request is allowed (half-open state). If the probe succeeds, the breaker
+ * closes, otherwise it opens again. All methods are implemented as
+ * thread-safe.
+ */
+final class CircuitBreaker {
+
+	/**
+	 * States of the breaker.
+	 */
+	private enum State {
+		/**
+		 * Requests are allowed.
+		 */
+		CLOSED,
+
+		/**
+		 * Requests are rejected.
+		 */
+		OPEN,
+
+		/**
+		 * A probe request is allowed.
+		 */
+		HALF_OPEN
+	}
+
+	/**
+	 * Current state of the breaker.
+	 */
+	private State state = State.CLOSED;
+
+	/**
+	 * Number of consecutive failed requests.
+	 */
+	private int consecutiveFailures;
+
+	/**
+	 * Time when the open breaker allows a probe request.
+	 */
+	private long probeTime;
+
+	/**
+	 * Indicates whether a probe request is in progress.
+	 */
+	private boolean probeInProgress;
+
+	/**
+	 * Decides whether a request can be sent.
+	 * 
+	 * @param failureThreshold
+	 *            the number of consecutive failures that open the breaker.
+	 *            Zero or negative value disables the breaker.
+	 * @return true, if the request can be sent, false if the request must be
+	 *         rejected.
+	 */
+	synchronized boolean allowRequest(int failureThreshold) {
+		if (failureThreshold <= 0) {
+			state = State.CLOSED;
+			return true;
+		}
+
+		switch (state) {
+		case CLOSED:
+			return true;
+		case OPEN:
+			if (MonotonicClock.INSTANCE.currentTimeMillis() < probeTime) {
+				return false;
+			}
+
+			state = State.HALF_OPEN;
+			probeInProgress = true;
+			return true;
+		default:
+			if (probeInProgress) {
+				return false;
+			}
+
+			probeInProgress = true;
+			return true;
+		}
+	}
+
+	/**
+	 * Records a request that received a response.
+	 */
+	synchronized void recordSuccess() {
+		state = State.CLOSED;
+		consecutiveFailures = 0;
+		probeInProgress = false;
+	}
+
+	/**
+	 * Records a request that failed without response.
+	 * 
+	 * @param failureThreshold
+	 *            the number of consecutive failures that open the breaker.
+	 * @param probeInterval
+	 *            the time in milliseconds between probe requests.
+	 */
+	synchronized void recordFailure(int failureThreshold, long probeInterval) {
+		consecutiveFailures++;
+		if ((state == State.HALF_OPEN)
+				|| ((state == State.CLOSED) && (failureThreshold > 0) && (consecutiveFailures >= failureThreshold))) {
+			state = State.OPEN;
+			probeTime = MonotonicClock.INSTANCE.currentTimeMillis() + probeInterval;
+			probeInProgress = false;
+		}
+	}
+
+	/**
+	 * Records a request that was cancelled before completion.
+	 */
+	synchronized void recordCancellation() {
+		probeInProgress = false;
+	}
+
+	/**
+	 * Returns whether the breaker rejects requests.
+	 * 
+	 * @return true, if the breaker is open or half-open, false otherwise.
+	 */
+	synchronized boolean isOpen() {
+		return state != State.CLOSED;
+	}
+
+	/**
+	 * Returns whether a request would be rejected without changing state of
+	 * the breaker.
+	 * 
+	 * @param failureThreshold
+	 *            the number of consecutive failures that open the breaker.
+	 * @return true, if the request would be rejected, false otherwise.
+	 */
+	synchronized boolean isRejecting(int failureThreshold) {
+		if ((failureThreshold <= 0) || (state == State.CLOSED)) {
+			return false;
+		}
+
+		if (state == State.OPEN) {
+			return MonotonicClock.INSTANCE.currentTimeMillis() < probeTime;
+		}
+
+		return probeInProgress;
+	}
+}
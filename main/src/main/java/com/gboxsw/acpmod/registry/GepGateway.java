@@ -1,6 +1,8 @@
 package com.gboxsw.acpmod.registry;
 
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.ReentrantLock;
 
 import com.gboxsw.acpmod.gep.GEPMessenger;
 import com.gboxsw.acpmod.gep.GEPMessenger.*;
@@ -37,10 +39,52 @@ public final class GepGateway implements Gateway {
 	 */
 	private final static int GET_CHANGE_HINT_REQUEST = 0x05;
 
+	/**
+	 * Code of request for reading values of multiple integer registers.
+	 */
+	private final static int READ_INT_REGISTRIES_REQUEST = 0x06;
+
+	/**
+	 * Code of request for writing values to multiple integer registers.
+	 */
+	private final static int WRITE_INT_REGISTRIES_REQUEST = 0x08;
+
+	/**
+	 * Code of request for retrieving multiple change hints - identifiers of
+	 * registers whose values have changed after last reading of their values,
+	 * optionally with their current values.
+	 */
+	private final static int GET_CHANGE_HINTS_REQUEST = 0x09;
+
+	/**
+	 * Flag of change hints request asking for values of changed registers.
+	 */
+	private final static int CHANGE_HINTS_WITH_VALUES = 0x01;
+
+	/**
+	 * Maximal number of change hints retrieved by a single request.
+	 */
+	public static final int MAX_CHANGE_HINTS = 16;
+
+	/**
+	 * Code of message sent by a registry without a request notifying that
+	 * registers have been changed. The code is followed by the identifier of
+	 * the registry and identifiers of changed registers. Notices are
+	 * recognized by the code (responses start with 0x00, 0x01 or 0x02), the
+	 * tag of a notice should be {@link #CHANGE_NOTICE_TAG}.
+	 */
+	private final static int CHANGE_NOTICE_MESSAGE = 0x10;
+
+	/**
+	 * Tag that registries should use to send change notices. Requests are
+	 * sent with tags from 0 to 999, hence a notice sent with this tag never
+	 * collides with an open request.
+	 */
+	public static final int CHANGE_NOTICE_TAG = 1000;
+
 	/**
 	 * Code of response indicating an unknown request or failed request.
 	 */
-	@SuppressWarnings("unused")
 	private final static int REQUEST_FAILED_RESPONSE = 0x00;
 
 	/**
@@ -65,6 +109,107 @@ public final class GepGateway implements Gateway {
 	 */
 	private final static byte[] EMPTY_PAYLOAD = new byte[0];
 
+	/**
+	 * Maximal size of a GEP message in bytes.
+	 */
+	private static final int MAX_MESSAGE_SIZE = 30;
+
+	/**
+	 * Maximal number of bytes of an encoded numeric value.
+	 */
+	private static final int MAX_ENCODED_NUMBER_LENGTH = 5;
+
+	/**
+	 * Upper limit for the number of simultaneously open requests.
+	 */
+	private static final int MAX_OPEN_REQUESTS_LIMIT = 256;
+
+	/**
+	 * Default maximal number of registers read by a single batch request.
+	 */
+	private static final int DEFAULT_MAX_REGISTERS_IN_BATCH = 8;
+
+	/**
+	 * Default minimal time in milliseconds between two flushes of deferred
+	 * writes to registers of a registry.
+	 */
+	private static final long DEFAULT_WRITE_FLUSH_INTERVAL = 50;
+
+	/**
+	 * Default time in milliseconds after which a waiting request is promoted
+	 * to the next higher priority class.
+	 */
+	private static final long DEFAULT_AGING_INTERVAL = 1000;
+
+	/**
+	 * Default minimal adaptive timeout in milliseconds.
+	 */
+	private static final long DEFAULT_MIN_ADAPTIVE_TIMEOUT = 50;
+
+	/**
+	 * Default maximal adaptive timeout in milliseconds.
+	 */
+	private static final long DEFAULT_MAX_ADAPTIVE_TIMEOUT = 2000;
+
+	/**
+	 * Default number of consecutive failed requests after which requests to a
+	 * registry are rejected.
+	 */
+	private static final int DEFAULT_FAILURE_THRESHOLD = 5;
+
+	/**
+	 * Default time in milliseconds between probe requests sent to an
+	 * unavailable registry.
+	 */
+	private static final long DEFAULT_PROBE_INTERVAL = 5000;
+
+	/**
+	 * Maximal number of timed out requests whose late responses are used to
+	 * measure round-trip times.
+	 */
+	private static final int MAX_TIMED_OUT_REQUESTS = 64;
+
+	/**
+	 * Name of the thread that executes timed actions of gateways.
+	 */
+	private static final String TIMER_THREAD_NAME = "GEP gateway timer";
+
+	/**
+	 * Timer shared by all gateways that completes requests whose timeout
+	 * elapsed and flushes deferred writes.
+	 */
+	private static final ScheduledThreadPoolExecutor timer;
+
+	static {
+		timer = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, TIMER_THREAD_NAME);
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		timer.setRemoveOnCancelPolicy(true);
+	}
+
+	/**
+	 * Exception indicating that sending of a request failed.
+	 */
+	private static final class SendFailedException extends RuntimeException {
+
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * Constructs the exception.
+		 * 
+		 * @param cause
+		 *            the cause or null, if the cause is unknown.
+		 */
+		SendFailedException(Throwable cause) {
+			super("Sending of request failed.", cause);
+		}
+	}
+
 	/**
 	 * Remote collection of registers provided by a single device in a GEP based
 	 * network of devices/targets.
@@ -81,481 +226,2226 @@ public final class GepGateway implements Gateway {
 		 */
 		private final RequestStatistics statistics = new RequestStatistics();
 
+		/**
+		 * Indicates whether the registry accepts batch read requests. The flag
+		 * is cleared when the registry rejects a batch request.
+		 */
+		private volatile boolean batchReadSupported = true;
+
+		/**
+		 * Indicates whether the registry accepts batch write requests. The
+		 * flag is cleared when the registry rejects a batch request.
+		 */
+		private volatile boolean batchWriteSupported = true;
+
+		/**
+		 * Indicates whether the registry accepts requests for multiple change
+		 * hints. The flag is cleared when the registry rejects the request.
+		 */
+		private volatile boolean multipleHintsSupported = true;
+
+		/**
+		 * Deferred writes to integer registers waiting for a flush indexed by
+		 * identifiers of registers.
+		 */
+		private final Map<Integer, DeferredWrite> deferredWrites = new LinkedHashMap<>();
+
+		/**
+		 * Shared reads of integer registers in progress indexed by identifiers
+		 * of registers.
+		 */
+		private final Map<Integer, SharedRead<Integer>> sharedIntegerReads = new HashMap<>();
+
+		/**
+		 * Shared reads of binary registers in progress indexed by identifiers
+		 * of registers.
+		 */
+		private final Map<Integer, SharedRead<byte[]>> sharedBinaryReads = new HashMap<>();
+
+		/**
+		 * Circuit breaker that rejects requests when the registry is not
+		 * responding.
+		 */
+		private final CircuitBreaker circuitBreaker = new CircuitBreaker();
+
+		/**
+		 * Listeners of change notices sent by the registry.
+		 */
+		private final List<ChangeNoticeListener> changeNoticeListeners = new CopyOnWriteArrayList<>();
+
+		/**
+		 * Indicates whether a flush of deferred writes is scheduled.
+		 */
+		private boolean flushScheduled = false;
+
+		/**
+		 * Time of the last flush of deferred writes.
+		 */
+		private long lastFlushTime = Long.MIN_VALUE;
+
 		@Override
 		public int getChangeHintId(int confirmedRegisterId, long timeout) {
-			try {
-				int result = GepGateway.this.getChangeHint(registryId, confirmedRegisterId, timeout);
-				statistics.countRequest(false);
-				return result;
-			} catch (Exception e) {
-				statistics.countRequest(true);
-				throw e;
-			}
+			return await(getChangeHintIdAsync(confirmedRegisterId, timeout));
 		}
 
 		@Override
-		public int readIntegerRegister(int registerId, long timeout) throws RuntimeException {
-			try {
-				int result = GepGateway.this.readIntegerRegister(registryId, registerId, timeout);
-				statistics.countRequest(false);
-				return result;
-			} catch (Exception e) {
-				statistics.countRequest(true);
-				throw e;
-			}
+		public CompletableFuture<Integer> getChangeHintIdAsync(int confirmedRegisterId, long timeout) {
+			return GepGateway.this.getChangeHintAsync(registryId, confirmedRegisterId, timeout);
 		}
 
 		@Override
-		public void writeIntegerRegister(int registerId, int value, long timeout) throws RuntimeException {
-			try {
-				GepGateway.this.writeIntegerRegister(registryId, registerId, value, timeout);
-				statistics.countRequest(false);
-			} catch (Exception e) {
-				statistics.countRequest(true);
-				throw e;
-			}
+		public ChangeHint[] getChangeHints(int[] confirmedRegisterIds, int maxHints, boolean withValues,
+				long timeout) {
+			return await(getChangeHintsAsync(confirmedRegisterIds, maxHints, withValues, timeout));
 		}
 
 		@Override
-		public byte[] readBinaryRegister(int registerId, long timeout) throws RuntimeException {
-			try {
-				byte[] result = GepGateway.this.readBinaryRegister(registryId, registerId, timeout);
-				statistics.countRequest(false);
+		public CompletableFuture<ChangeHint[]> getChangeHintsAsync(final int[] confirmedRegisterIds, int maxHints,
+				boolean withValues, final long timeout) {
+			if (maxHints < 1) {
+				throw new IllegalArgumentException("The maximal number of hints must be a positive number.");
+			}
+
+			if (multipleHintsSupported) {
+				final CompletableFuture<ChangeHint[]> result = new CompletableFuture<>();
+				GepGateway.this.getChangeHintsAsync(registryId, confirmedRegisterIds,
+						Math.min(maxHints, MAX_CHANGE_HINTS), withValues, timeout).whenComplete((value, failure) -> {
+							if (failure == null) {
+								result.complete(value);
+							} else if (failure.getCause() instanceof RejectedRequestException) {
+								multipleHintsSupported = false;
+								getSingleChangeHintAsync(confirmedRegisterIds, timeout).whenComplete(
+										(fallbackValue, fallbackFailure) -> {
+											if (fallbackFailure == null) {
+												result.complete(fallbackValue);
+											} else {
+												result.completeExceptionally(fallbackFailure);
+											}
+										});
+							} else {
+								result.completeExceptionally(failure);
+							}
+						});
+
 				return result;
-			} catch (Exception e) {
-				statistics.countRequest(true);
-				throw e;
 			}
+
+			return getSingleChangeHintAsync(confirmedRegisterIds, timeout);
 		}
 
 		@Override
-		public void writeBinaryRegister(int registerId, byte[] value, long timeout) throws RuntimeException {
-			try {
-				GepGateway.this.writeBinaryRegister(registryId, registerId, value, timeout);
-				statistics.countRequest(false);
-			} catch (Exception e) {
-				statistics.countRequest(true);
-				throw e;
+		public int countConfirmableRegisters(int[] confirmedRegisterIds) {
+			// a simple hint request confirms at most one register
+			if (!multipleHintsSupported) {
+				return Math.min(confirmedRegisterIds.length, 1);
 			}
+
+			return countConfirmationsInRequest(confirmedRegisterIds);
 		}
 
-		private GepRegisterCollection(int registryId) {
-			this.registryId = registryId;
+		/**
+		 * Retrieves a single change hint without value as a replacement of
+		 * request for multiple change hints. Only the first confirmed register
+		 * is confirmed.
+		 * 
+		 * @param confirmedRegisterIds
+		 *            the identifiers of confirmed registers or null.
+		 * @param timeout
+		 *            the maximal amount of time in milliseconds to complete
+		 *            the operation.
+		 * @return the future completed with at most one change hint.
+		 */
+		private CompletableFuture<ChangeHint[]> getSingleChangeHintAsync(int[] confirmedRegisterIds, long timeout) {
+			int confirmedRegisterId = ((confirmedRegisterIds != null) && (confirmedRegisterIds.length > 0))
+					? confirmedRegisterIds[0] : -1;
+			return getChangeHintIdAsync(confirmedRegisterId, timeout).thenApply(
+					hintId -> (hintId < 0) ? new ChangeHint[0] : new ChangeHint[] { new ChangeHint(hintId) });
 		}
 
 		@Override
-		public RequestStatistics getStatistics() {
-			return statistics;
+		public int readIntegerRegister(int registerId, long timeout) throws RuntimeException {
+			return await(readIntegerRegisterAsync(registerId, timeout));
 		}
 
 		@Override
-		public Gateway getGateway() {
-			return GepGateway.this;
+		public CompletableFuture<Integer> readIntegerRegisterAsync(int registerId, long timeout) {
+			return readIntegerRegisterAsync(registerId, timeout, RequestPriority.FOREGROUND_READ);
 		}
-	}
 
-	/**
-	 * Messenger that allows communication with a remote registry using GEP
-	 * protocol.
-	 */
-	private final GEPMessenger messenger;
+		@Override
+		public CompletableFuture<Integer> readIntegerRegisterAsync(final int registerId, final long timeout,
+				final RequestPriority priority) {
+			// each caller receives its own future, so that cancellation by a
+			// caller does not affect other callers sharing the read
+			return executeSharedRead(sharedIntegerReads, registerId, priority,
+					new Callable<CompletableFuture<Integer>>() {
+						@Override
+						public CompletableFuture<Integer> call() {
+							return GepGateway.this.readIntegerRegisterAsync(registryId, registerId, timeout, priority);
+						}
+					}).thenApply(value -> value);
+		}
 
-	/**
-	 * Map of created registry collections.
-	 */
-	private final Map<Integer, GepRegisterCollection> registerCollections = new HashMap<>();
+		@Override
+		public void writeIntegerRegister(int registerId, int value, long timeout) throws RuntimeException {
+			await(writeIntegerRegisterAsync(registerId, value, timeout));
+		}
 
-	/**
-	 * Counter to generate "unique" request tags.
-	 */
-	private int tagCounter = 0;
+		@Override
+		public CompletableFuture<Void> writeIntegerRegisterAsync(int registerId, int value, long timeout) {
+			return GepGateway.this.writeIntegerRegisterAsync(registryId, registerId, value, timeout);
+		}
 
-	/**
-	 * Tag associated to pending (open, not completed) request.
-	 */
-	private int tagOfOpenRequest = -1;
+		@Override
+		public byte[] readBinaryRegister(int registerId, long timeout) throws RuntimeException {
+			return await(readBinaryRegisterAsync(registerId, timeout));
+		}
 
-	/**
-	 * Response to request.
-	 */
-	private byte[] receivedResponse = null;
+		@Override
+		public CompletableFuture<byte[]> readBinaryRegisterAsync(int registerId, long timeout) {
+			return readBinaryRegisterAsync(registerId, timeout, RequestPriority.FOREGROUND_READ);
+		}
 
-	/**
-	 * Internal lock that manages processing received messages.
-	 */
-	private final Object requestLock = new Object();
+		@Override
+		public CompletableFuture<byte[]> readBinaryRegisterAsync(final int registerId, final long timeout,
+				final RequestPriority priority) {
+			// each caller receives its own copy of the value
+			return executeSharedRead(sharedBinaryReads, registerId, priority,
+					new Callable<CompletableFuture<byte[]>>() {
+						@Override
+						public CompletableFuture<byte[]> call() {
+							return GepGateway.this.readBinaryRegisterAsync(registryId, registerId, timeout, priority);
+						}
+					}).thenApply(value -> value.clone());
+		}
 
-	/**
-	 * Internal synchronization lock that ensures that all operations are
-	 * executed in a serial order.
-	 */
-	private final Object serialOrderLock = new Object();
+		@Override
+		public void writeBinaryRegister(int registerId, byte[] value, long timeout) throws RuntimeException {
+			await(writeBinaryRegisterAsync(registerId, value, timeout));
+		}
 
-	/**
-	 * Constructs new gateway to registers which is based on GEP messenger.
-	 * 
-	 * @param socket
-	 *            the stream socket providing access to remote side or network.
-	 * @param messengerId
-	 *            the identifier of the messenger applied to filter incoming
-	 *            messages. Allowed values are between 0 and 15, if the value is
-	 *            0, all messages are received.
-	 * @param useDaemonThread
-	 *            the setting that specifies whether underlying communication
-	 *            thread is marked as a daemon thread or a user thread.
-	 */
-	public GepGateway(FullDuplexStreamSocket socket, int messengerId, boolean useDaemonThread) {
-		messenger = new GEPMessenger(socket, messengerId, 30, new MessageListener() {
-			@Override
-			public void onMessageReceived(int tag, byte[] message) {
-				handleMessage(tag, message);
-			}
-		});
+		@Override
+		public CompletableFuture<Void> writeBinaryRegisterAsync(int registerId, byte[] value, long timeout) {
+			return GepGateway.this.writeBinaryRegisterAsync(registryId, registerId, value, timeout);
+		}
 
-		messenger.setDaemon(useDaemonThread);
-	}
+		@Override
+		public int[] readIntegerRegisters(int[] registerIds, long timeout) throws RuntimeException {
+			return await(readIntegerRegistersAsync(registerIds, timeout));
+		}
 
-	/**
-	 * Sets the initial delay in a new session.
-	 * 
-	 * @param initialDelay
-	 *            the initial delay in milliseconds.
-	 * 
-	 * @see GEPMessenger#setInitialDelay(long)
-	 */
-	public void setInitialDelay(long initialDelay) {
-		messenger.setInitialDelay(initialDelay);
-	}
+		@Override
+		public CompletableFuture<int[]> readIntegerRegistersAsync(int[] registerIds, long timeout) {
+			return readIntegerRegistersAsync(registerIds, timeout, RequestPriority.FOREGROUND_READ);
+		}
 
-	/**
-	 * Returns the initial delay in a new session.
-	 * 
-	 * @return the initial delay in milliseconds.
-	 * 
-	 * @see GEPMessenger#getInitialDelay()
-	 */
-	public long getInitialDelay() {
-		return messenger.getInitialDelay();
-	}
+		@Override
+		public CompletableFuture<int[]> readIntegerRegistersAsync(final int[] registerIds, final long timeout,
+				final RequestPriority priority) {
+			final int[] result = new int[registerIds.length];
+			List<CompletableFuture<Void>> parts = new ArrayList<>();
+			int offset = 0;
+			for (int batchLength : splitIntoBatches(registerIds, null, MAX_ENCODED_NUMBER_LENGTH)) {
+				final int[] ids = Arrays.copyOfRange(registerIds, offset, offset + batchLength);
+				final int resultOffset = offset;
+				offset += batchLength;
+				parts.add(executeBatch(ids, false, new BatchOperation<int[]>() {
+					@Override
+					public CompletableFuture<int[]> executeInBatch() {
+						return GepGateway.this.readIntegerRegistersAsync(registryId, ids, timeout, priority);
+					}
 
-	/**
-	 * Starts the session ensuring GEP connection to available remote register
-	 * collections.
-	 */
-	@Override
-	public void start() {
-		synchronized (serialOrderLock) {
-			try {
-				messenger.start(true);
-			} catch (Exception e) {
-				throw new RuntimeException("Start of session (based on GEP messenger) failed.", e);
+					@Override
+					public CompletableFuture<int[]> executeOneByOne() {
+						final int[] values = new int[ids.length];
+						CompletableFuture<?>[] reads = new CompletableFuture<?>[ids.length];
+						for (int i = 0; i < ids.length; i++) {
+							final int idx = i;
+							reads[i] = readIntegerRegisterAsync(ids[i], timeout, priority)
+									.thenAccept(value -> values[idx] = value);
+						}
+
+						return CompletableFuture.allOf(reads).thenApply(ignore -> values);
+					}
+				}).thenAccept(values -> System.arraycopy(values, 0, result, resultOffset, values.length)));
 			}
+
+			return CompletableFuture.allOf(parts.toArray(new CompletableFuture<?>[parts.size()]))
+					.thenApply(ignore -> result);
 		}
-	}
 
-	@Override
-	public boolean isRunning() {
-		return messenger.isRunning();
-	}
+		@Override
+		public byte[][] readBinaryRegisters(int[] registerIds, long timeout) throws RuntimeException {
+			return await(readBinaryRegistersAsync(registerIds, timeout));
+		}
 
-	/**
-	 * Stops the session ensuring GEP connection to available remote register
-	 * collections.
-	 * 
-	 * @param blocked
+		@Override
+		public CompletableFuture<byte[][]> readBinaryRegistersAsync(int[] registerIds, long timeout) {
+			return readBinaryRegistersAsync(registerIds, timeout, RequestPriority.FOREGROUND_READ);
+		}
+
+		@Override
+		public CompletableFuture<byte[][]> readBinaryRegistersAsync(final int[] registerIds, final long timeout,
+				final RequestPriority priority) {
+			// a value of binary register can fill a whole response to a single
+			// read (the length of such value is encoded in a single byte),
+			// hence binary registers are read by pipelined single requests
+			final byte[][] result = new byte[registerIds.length][];
+			CompletableFuture<?>[] reads = new CompletableFuture<?>[registerIds.length];
+			for (int i = 0; i < registerIds.length; i++) {
+				final int idx = i;
+				reads[i] = readBinaryRegisterAsync(registerIds[i], timeout, priority)
+						.thenAccept(value -> result[idx] = value);
+			}
+
+			return CompletableFuture.allOf(reads).thenApply(ignore -> result);
+		}
+
+		@Override
+		public void writeIntegerRegisters(int[] registerIds, int[] values, long timeout) throws RuntimeException {
+			await(writeIntegerRegistersAsync(registerIds, values, timeout));
+		}
+
+		@Override
+		public CompletableFuture<Void> writeIntegerRegistersAsync(final int[] registerIds, final int[] values,
+				final long timeout) {
+			if (registerIds.length != values.length) {
+				throw new IllegalArgumentException("Number of values does not match the number of registers.");
+			}
+
+			// each register in the request is followed by the encoded value,
+			// the response contains only the response code
+			byte[][] encodedValues = new byte[values.length][];
+			for (int i = 0; i < values.length; i++) {
+				encodedValues[i] = encodeNumber(values[i]);
+			}
+
+			List<CompletableFuture<Void>> parts = new ArrayList<>();
+			int offset = 0;
+			for (int batchLength : splitIntoBatches(registerIds, encodedValues, 0)) {
+				final int[] ids = Arrays.copyOfRange(registerIds, offset, offset + batchLength);
+				final int[] idsValues = Arrays.copyOfRange(values, offset, offset + batchLength);
+				offset += batchLength;
+				parts.add(executeBatch(ids, true, new BatchOperation<Void>() {
+					@Override
+					public CompletableFuture<Void> executeInBatch() {
+						return GepGateway.this.writeIntegerRegistersAsync(registryId, ids, idsValues, timeout);
+					}
+
+					@Override
+					public CompletableFuture<Void> executeOneByOne() {
+						CompletableFuture<?>[] writes = new CompletableFuture<?>[ids.length];
+						for (int i = 0; i < ids.length; i++) {
+							writes[i] = writeIntegerRegisterAsync(ids[i], idsValues[i], timeout);
+						}
+
+						return CompletableFuture.allOf(writes);
+					}
+				}));
+			}
+
+			return CompletableFuture.allOf(parts.toArray(new CompletableFuture<?>[parts.size()]));
+		}
+
+		@Override
+		public CompletableFuture<Integer> writeIntegerRegisterDeferred(int registerId, int value, long timeout) {
+			checkRegisterId(registerId);
+
+			synchronized (deferredWrites) {
+				// merge with a pending write to the same register
+				DeferredWrite deferredWrite = deferredWrites.get(registerId);
+				if (deferredWrite == null) {
+					deferredWrite = new DeferredWrite();
+					deferredWrites.put(registerId, deferredWrite);
+				}
+				deferredWrite.value = value;
+				deferredWrite.timeout = timeout;
+
+				// schedule flush respecting the minimal time between flushes
+				if (!flushScheduled) {
+					flushScheduled = true;
+					long delay = 0;
+					if (lastFlushTime != Long.MIN_VALUE) {
+						delay = Math.max(0, lastFlushTime + getWriteFlushInterval()
+								- MonotonicClock.INSTANCE.currentTimeMillis());
+					}
+
+					timer.schedule(new Runnable() {
+						@Override
+						public void run() {
+							flushDeferredWrites();
+						}
+					}, delay, TimeUnit.MILLISECONDS);
+				}
+
+				return deferredWrite.result;
+			}
+		}
+
+		/**
+		 * Executes a read of register that is shared by all concurrent reads
+		 * of the same register. If a read of the register with the same or
+		 * higher priority is in progress, the caller is attached to this read
+		 * and no new request is sent. Otherwise, a new read is started and
+		 * subsequent reads are attached to it.
+		 * 
+		 * @param sharedReads
+		 *            the map with shared reads in progress.
+		 * @param registerId
+		 *            the identifier of the register.
+		 * @param priority
+		 *            the priority class of the read.
+		 * @param read
+		 *            the read operation that is executed, if there is no
+		 *            suitable read in progress.
+		 * @return the future of the shared read. The future must not be
+		 *         exposed to callers.
+		 */
+		private <T> CompletableFuture<T> executeSharedRead(final Map<Integer, SharedRead<T>> sharedReads,
+				final int registerId, RequestPriority priority, Callable<CompletableFuture<T>> read) {
+			checkRegisterId(registerId);
+
+			final SharedRead<T> sharedRead;
+			synchronized (sharedReads) {
+				SharedRead<T> readInProgress = sharedReads.get(registerId);
+				if ((readInProgress != null) && (readInProgress.priority.compareTo(priority) <= 0)) {
+					return readInProgress.result;
+				}
+
+				sharedRead = new SharedRead<>(priority);
+				sharedReads.put(registerId, sharedRead);
+			}
+
+			// request is sent without holding the lock, since it can be
+			// completed in the current thread
+			CompletableFuture<T> request;
+			try {
+				request = read.call();
+			} catch (Exception e) {
+				request = new CompletableFuture<>();
+				request.completeExceptionally(e);
+			}
+
+			request.whenComplete((value, failure) -> {
+				synchronized (sharedReads) {
+					// the read could be replaced by a read with higher priority
+					sharedReads.remove(registerId, sharedRead);
+				}
+
+				if (failure == null) {
+					sharedRead.result.complete(value);
+				} else {
+					sharedRead.result.completeExceptionally(failure);
+				}
+			});
+
+			return sharedRead.result;
+		}
+
+		/**
+		 * Writes all deferred writes using batch write requests and verifies
+		 * the written values using batch read requests.
+		 */
+		private void flushDeferredWrites() {
+			final List<DeferredWrite> writes;
+			final int[] ids;
+			final int[] values;
+			long timeout = Long.MIN_VALUE;
+			synchronized (deferredWrites) {
+				flushScheduled = false;
+				lastFlushTime = MonotonicClock.INSTANCE.currentTimeMillis();
+				if (deferredWrites.isEmpty()) {
+					return;
+				}
+
+				writes = new ArrayList<>(deferredWrites.values());
+				ids = new int[writes.size()];
+				values = new int[writes.size()];
+				int idx = 0;
+				for (Map.Entry<Integer, DeferredWrite> entry : deferredWrites.entrySet()) {
+					ids[idx] = entry.getKey();
+					values[idx] = entry.getValue().value;
+					if ((timeout > 0) || (timeout == Long.MIN_VALUE)) {
+						timeout = (entry.getValue().timeout > 0) ? Math.max(timeout, entry.getValue().timeout) : 0;
+					}
+					idx++;
+				}
+				deferredWrites.clear();
+			}
+
+			final long operationTimeout = timeout;
+			writeIntegerRegistersAsync(ids, values, operationTimeout)
+					.thenCompose(ignore -> readIntegerRegistersAsync(ids, operationTimeout))
+					.whenComplete((verifiedValues, failure) -> {
+						if (failure instanceof CompletionException) {
+							failure = failure.getCause();
+						}
+
+						for (int i = 0; i < writes.size(); i++) {
+							if (failure == null) {
+								writes.get(i).result.complete(verifiedValues[i]);
+							} else {
+								writes.get(i).result.completeExceptionally(failure);
+							}
+						}
+					});
+		}
+
+		/**
+		 * Splits registers into consecutive batches. A batch contains at most
+		 * the maximal number of registers in batch and both the request and
+		 * the worst-case response of the batch fit into a single message.
+		 * 
+		 * @param registerIds
+		 *            the identifiers of registers.
+		 * @param payloads
+		 *            the payloads attached after identifiers of registers in
+		 *            the request or null, if no payloads are attached.
+		 * @param maxResponseLength
+		 *            the maximal number of bytes of response data of a single
+		 *            register.
+		 * @return the numbers of registers in consecutive batches.
+		 */
+		private List<Integer> splitIntoBatches(int[] registerIds, byte[][] payloads, int maxResponseLength) {
+			final int maxBatchLength = getMaxRegistersInBatch();
+			List<Integer> batchLengths = new ArrayList<>();
+			int batchLength = 0;
+			int requestLength = 1;
+			int responseLength = 1;
+			for (int i = 0; i < registerIds.length; i++) {
+				int registerLength = (registerIds[i] < 128) ? 1 : 2;
+				if (payloads != null) {
+					registerLength += payloads[i].length;
+				}
+
+				// a register that does not fit is the first register of the
+				// next batch
+				if ((batchLength > 0) && ((batchLength == maxBatchLength)
+						|| (requestLength + registerLength > MAX_MESSAGE_SIZE)
+						|| (responseLength + maxResponseLength > MAX_MESSAGE_SIZE))) {
+					batchLengths.add(batchLength);
+					batchLength = 0;
+					requestLength = 1;
+					responseLength = 1;
+				}
+
+				batchLength++;
+				requestLength += registerLength;
+				responseLength += maxResponseLength;
+			}
+
+			if (batchLength > 0) {
+				batchLengths.add(batchLength);
+			}
+
+			return batchLengths;
+		}
+
+		/**
+		 * Executes an operation with multiple registers using a batch request.
+		 * If the registry rejects the batch request, the operation is executed
+		 * one by one. Batch requests of the same kind are disabled for the
+		 * registry only if all registers of the rejected batch are processed
+		 * one by one, i.e., the batch was not rejected due to an invalid
+		 * register.
+		 * 
+		 * @param registerIds
+		 *            the identifiers of registers.
+		 * @param writeOperation
+		 *            true, if the operation is a write operation, false for a
+		 *            read operation.
+		 * @param operation
+		 *            the operation.
+		 * @return the future completed with the result of operation.
+		 */
+		private <T> CompletableFuture<T> executeBatch(int[] registerIds, final boolean writeOperation,
+				final BatchOperation<T> operation) {
+			for (int registerId : registerIds) {
+				checkRegisterId(registerId);
+			}
+
+			boolean batchSupported = writeOperation ? batchWriteSupported : batchReadSupported;
+			if ((!batchSupported) || (registerIds.length == 1)) {
+				return operation.executeOneByOne();
+			}
+
+			final CompletableFuture<T> result = new CompletableFuture<>();
+			operation.executeInBatch().whenComplete((value, failure) -> {
+				if (failure == null) {
+					result.complete(value);
+				} else if (failure.getCause() instanceof RejectedRequestException) {
+					operation.executeOneByOne().whenComplete((fallbackValue, fallbackFailure) -> {
+						if (fallbackFailure == null) {
+							if (writeOperation) {
+								batchWriteSupported = false;
+							} else {
+								batchReadSupported = false;
+							}
+
+							result.complete(fallbackValue);
+						} else {
+							result.completeExceptionally(fallbackFailure);
+						}
+					});
+				} else {
+					result.completeExceptionally(failure);
+				}
+			});
+
+			return result;
+		}
+
+		private GepRegisterCollection(int registryId) {
+			this.registryId = registryId;
+		}
+
+		@Override
+		public void addChangeNoticeListener(ChangeNoticeListener listener) {
+			if (listener == null) {
+				throw new NullPointerException("Listener cannot be null.");
+			}
+
+			changeNoticeListeners.add(listener);
+		}
+
+		@Override
+		public void removeChangeNoticeListener(ChangeNoticeListener listener) {
+			changeNoticeListeners.remove(listener);
+		}
+
+		/**
+		 * Notifies listeners about a change notice sent by the registry.
+		 * 
+		 * @param registerIds
+		 *            the identifiers of changed registers.
+		 */
+		private void fireChangeNotice(int[] registerIds) {
+			for (ChangeNoticeListener listener : changeNoticeListeners) {
+				try {
+					listener.onChangeNotice(this, registerIds);
+				} catch (Exception ignore) {
+					// failure of a listener does not affect other listeners
+				}
+			}
+		}
+
+		@Override
+		public RequestStatistics getStatistics() {
+			return statistics;
+		}
+
+		@Override
+		public Gateway getGateway() {
+			return GepGateway.this;
+		}
+	}
+
+	/**
+	 * Decoder of the response to a request.
+	 * 
+	 * @param <T>
+	 *            the type of the decoded result.
+	 */
+	private interface ResponseDecoder<T> {
+		/**
+		 * Decodes a response that passed the check of response code.
+		 * 
+		 * @param response
+		 *            the response.
+		 * @return the decoded result.
+		 */
+		T decode(byte[] response);
+	}
+
+	/**
+	 * Operation with multiple registers.
+	 * 
+	 * @param <T>
+	 *            the type of the result.
+	 */
+	private interface BatchOperation<T> {
+		/**
+		 * Executes the operation using a batch request.
+		 * 
+		 * @return the future completed with the result of operation.
+		 */
+		CompletableFuture<T> executeInBatch();
+
+		/**
+		 * Executes the operation using single requests.
+		 * 
+		 * @return the future completed with the result of operation.
+		 */
+		CompletableFuture<T> executeOneByOne();
+	}
+
+	/**
+	 * Deferred write to an integer register.
+	 */
+	private static final class DeferredWrite {
+		/**
+		 * The value to be written.
+		 */
+		int value;
+
+		/**
+		 * Timeout of the write operation in milliseconds.
+		 */
+		long timeout;
+
+		/**
+		 * Future completed with the value read from the register after the
+		 * write.
+		 */
+		final CompletableFuture<Integer> result = new CompletableFuture<>();
+	}
+
+	/**
+	 * Read of register shared by concurrent callers.
+	 * 
+	 * @param <T>
+	 *            the type of the value.
+	 */
+	private static final class SharedRead<T> {
+		/**
+		 * Priority class of the request that reads the register.
+		 */
+		final RequestPriority priority;
+
+		/**
+		 * Future completed with the read value.
+		 */
+		final CompletableFuture<T> result = new CompletableFuture<>();
+
+		/**
+		 * Constructs the shared read.
+		 * 
+		 * @param priority
+		 *            the priority class of the request.
+		 */
+		SharedRead(RequestPriority priority) {
+			this.priority = priority;
+		}
+	}
+
+	/**
+	 * Request that waits for sending or for a response.
+	 */
+	private static final class PendingRequest {
+		/**
+		 * Identifier of the registry (destination ID of GEP message).
+		 */
+		final int registryId;
+
+		/**
+		 * The encoded request.
+		 */
+		final byte[] request;
+
+		/**
+		 * Maximal amount of time in milliseconds to receive the response after
+		 * the request is sent.
+		 */
+		final long timeout;
+
+		/**
+		 * Priority class of the request.
+		 */
+		final RequestPriority priority;
+
+		/**
+		 * Type of the request.
+		 */
+		final RequestType type;
+
+		/**
+		 * Circuit breaker of the registry.
+		 */
+		final CircuitBreaker circuitBreaker;
+
+		/**
+		 * Time when the request was queued.
+		 */
+		final long queueTime;
+
+		/**
+		 * Time when the request was sent.
+		 */
+		volatile long sendTime;
+
+		/**
+		 * Future that is completed with the received response or with null, if
+		 * timeout elapsed.
+		 */
+		final CompletableFuture<byte[]> response = new CompletableFuture<>();
+
+		/**
+		 * Tag of GEP message with the request or negative value, if the
+		 * request has not been sent.
+		 */
+		int tag = -1;
+
+		/**
+		 * Scheduled completion of the request when timeout elapses.
+		 */
+		ScheduledFuture<?> timeoutTask;
+
+		/**
+		 * Constructs a pending request.
+		 * 
+		 * @param registryId
+		 *            the identifier of the registry.
+		 * @param request
+		 *            the encoded request.
+		 * @param timeout
+		 *            the timeout in milliseconds.
+		 * @param priority
+		 *            the priority class of the request.
+		 * @param type
+		 *            the type of the request.
+		 * @param circuitBreaker
+		 *            the circuit breaker of the registry.
+		 */
+		PendingRequest(int registryId, byte[] request, long timeout, RequestPriority priority, RequestType type,
+				CircuitBreaker circuitBreaker) {
+			this.registryId = registryId;
+			this.request = request;
+			this.timeout = timeout;
+			this.priority = priority;
+			this.type = type;
+			this.circuitBreaker = circuitBreaker;
+			this.queueTime = MonotonicClock.INSTANCE.currentTimeMillis();
+		}
+	}
+
+	/**
+	 * Messenger that allows communication with a remote registry using GEP
+	 * protocol.
+	 */
+	private final GEPMessenger messenger;
+
+	/**
+	 * Map of created registry collections.
+	 */
+	private final Map<Integer, GepRegisterCollection> registerCollections = new HashMap<>();
+
+	/**
+	 * Counter to generate "unique" request tags.
+	 */
+	private int tagCounter = 0;
+
+	/**
+	 * Queues of requests waiting for a free slot in the window of open
+	 * requests. Index of a queue is the ordinal of priority class of requests
+	 * in the queue.
+	 */
+	private final Deque<PendingRequest>[] waitingRequests;
+
+	/**
+	 * Open (sent, not completed) requests indexed by tags of messages.
+	 */
+	private final Map<Integer, PendingRequest> openRequests = new HashMap<>();
+
+	/**
+	 * Number of open requests for each registry.
+	 */
+	private final int[] openRequestsPerRegistry = new int[16];
+
+	/**
+	 * Maximal number of simultaneously open requests in the gateway.
+	 */
+	private int maxOpenRequests = 1;
+
+	/**
+	 * Maximal number of simultaneously open requests for a registry.
+	 */
+	private int maxOpenRequestsPerRegistry = 1;
+
+	/**
+	 * Maximal number of registers read by a single batch request.
+	 */
+	private int maxRegistersInBatch = DEFAULT_MAX_REGISTERS_IN_BATCH;
+
+	/**
+	 * Minimal time in milliseconds between two flushes of deferred writes to
+	 * registers of a registry.
+	 */
+	private long writeFlushInterval = DEFAULT_WRITE_FLUSH_INTERVAL;
+
+	/**
+	 * Time in milliseconds after which a waiting request is promoted to the
+	 * next higher priority class.
+	 */
+	private long agingInterval = DEFAULT_AGING_INTERVAL;
+
+	/**
+	 * Estimators of round-trip times indexed by registry identifier and
+	 * ordinal of request type.
+	 */
+	private final RoundTripTimeEstimator[][] roundTripTimes = new RoundTripTimeEstimator[16][RequestType
+			.values().length];
+
+	/**
+	 * Recently timed out requests indexed by their tags. Late responses to
+	 * these requests are used to measure round-trip times of slow registries.
+	 */
+	private final Map<Integer, PendingRequest> timedOutRequests = new LinkedHashMap<Integer, PendingRequest>() {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Integer, PendingRequest> eldest) {
+			return size() > MAX_TIMED_OUT_REQUESTS;
+		}
+	};
+
+	/**
+	 * Indicates whether timeouts of requests are derived from observed
+	 * round-trip times.
+	 */
+	private volatile boolean adaptiveTimeouts = false;
+
+	/**
+	 * Minimal adaptive timeout in milliseconds.
+	 */
+	private volatile long minAdaptiveTimeout = DEFAULT_MIN_ADAPTIVE_TIMEOUT;
+
+	/**
+	 * Maximal adaptive timeout in milliseconds.
+	 */
+	private volatile long maxAdaptiveTimeout = DEFAULT_MAX_ADAPTIVE_TIMEOUT;
+
+	/**
+	 * Number of consecutive failed requests after which requests to a registry
+	 * are rejected.
+	 */
+	private volatile int failureThreshold = DEFAULT_FAILURE_THRESHOLD;
+
+	/**
+	 * Time in milliseconds between probe requests sent to an unavailable
+	 * registry.
+	 */
+	private volatile long probeInterval = DEFAULT_PROBE_INTERVAL;
+
+	/**
+	 * Internal lock that manages processing received messages.
+	 */
+	private final Object requestLock = new Object();
+
+	/**
+	 * Internal synchronization lock that ensures that operations with messenger
+	 * are executed in a serial order. Sending of a message can block, hence an
+	 * explicit lock is used instead of a monitor that would pin a virtual
+	 * thread to its carrier thread.
+	 */
+	private final ReentrantLock serialOrderLock = new ReentrantLock();
+
+	/**
+	 * Constructs new gateway to registers which is based on GEP messenger.
+	 * 
+	 * @param socket
+	 *            the stream socket providing access to remote side or network.
+	 * @param messengerId
+	 *            the identifier of the messenger applied to filter incoming
+	 *            messages. Allowed values are between 0 and 15, if the value is
+	 *            0, all messages are received.
+	 * @param useDaemonThread
+	 *            the setting that specifies whether underlying communication
+	 *            thread is marked as a daemon thread or a user thread.
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public GepGateway(FullDuplexStreamSocket socket, int messengerId, boolean useDaemonThread) {
+		waitingRequests = new Deque[RequestPriority.values().length];
+		for (int i = 0; i < waitingRequests.length; i++) {
+			waitingRequests[i] = new ArrayDeque<>();
+		}
+
+		for (RoundTripTimeEstimator[] registryRoundTripTimes : roundTripTimes) {
+			for (int i = 0; i < registryRoundTripTimes.length; i++) {
+				registryRoundTripTimes[i] = new RoundTripTimeEstimator();
+			}
+		}
+
+		messenger = new GEPMessenger(socket, messengerId, MAX_MESSAGE_SIZE, new MessageListener() {
+			@Override
+			public void onMessageReceived(int tag, byte[] message) {
+				handleMessage(tag, message);
+			}
+		});
+
+		messenger.setDaemon(useDaemonThread);
+	}
+
+	/**
+	 * Sets the initial delay in a new session.
+	 * 
+	 * @param initialDelay
+	 *            the initial delay in milliseconds.
+	 * 
+	 * @see GEPMessenger#setInitialDelay(long)
+	 */
+	public void setInitialDelay(long initialDelay) {
+		messenger.setInitialDelay(initialDelay);
+	}
+
+	/**
+	 * Returns the initial delay in a new session.
+	 * 
+	 * @return the initial delay in milliseconds.
+	 * 
+	 * @see GEPMessenger#getInitialDelay()
+	 */
+	public long getInitialDelay() {
+		return messenger.getInitialDelay();
+	}
+
+	/**
+	 * Returns the maximal number of simultaneously open requests in the
+	 * gateway.
+	 * 
+	 * @return the maximal number of open requests.
+	 */
+	public int getMaxOpenRequests() {
+		synchronized (requestLock) {
+			return maxOpenRequests;
+		}
+	}
+
+	/**
+	 * Sets the maximal number of simultaneously open requests in the gateway,
+	 * i.e., requests that has been sent and wait for a response. The value 1
+	 * (default) means that all requests are executed in a serial order.
+	 * Higher values enable pipelining of requests to different registries.
+	 * 
+	 * @param maxOpenRequests
+	 *            the maximal number of open requests.
+	 */
+	public void setMaxOpenRequests(int maxOpenRequests) {
+		if ((maxOpenRequests < 1) || (maxOpenRequests > MAX_OPEN_REQUESTS_LIMIT)) {
+			throw new IllegalArgumentException(
+					"Maximal number of open requests must be between 1 and " + MAX_OPEN_REQUESTS_LIMIT + ".");
+		}
+
+		synchronized (requestLock) {
+			this.maxOpenRequests = maxOpenRequests;
+		}
+
+		dispatchRequests();
+	}
+
+	/**
+	 * Returns the maximal number of simultaneously open requests for a single
+	 * registry.
+	 * 
+	 * @return the maximal number of open requests for a registry.
+	 */
+	public int getMaxOpenRequestsPerRegistry() {
+		synchronized (requestLock) {
+			return maxOpenRequestsPerRegistry;
+		}
+	}
+
+	/**
+	 * Sets the maximal number of simultaneously open requests for a single
+	 * registry. The value 1 (default) means that a registry (device) processes
+	 * at most one request at a time.
+	 * 
+	 * @param maxOpenRequestsPerRegistry
+	 *            the maximal number of open requests for a registry.
+	 */
+	public void setMaxOpenRequestsPerRegistry(int maxOpenRequestsPerRegistry) {
+		if ((maxOpenRequestsPerRegistry < 1) || (maxOpenRequestsPerRegistry > MAX_OPEN_REQUESTS_LIMIT)) {
+			throw new IllegalArgumentException("Maximal number of open requests for a registry must be between 1 and "
+					+ MAX_OPEN_REQUESTS_LIMIT + ".");
+		}
+
+		synchronized (requestLock) {
+			this.maxOpenRequestsPerRegistry = maxOpenRequestsPerRegistry;
+		}
+
+		dispatchRequests();
+	}
+
+	/**
+	 * Returns the maximal number of registers whose values are read by a
+	 * single batch request.
+	 * 
+	 * @return the maximal number of registers in a batch request.
+	 */
+	public int getMaxRegistersInBatch() {
+		synchronized (requestLock) {
+			return maxRegistersInBatch;
+		}
+	}
+
+	/**
+	 * Sets the maximal number of registers whose values are read by a single
+	 * batch request. Longer lists of registers are split to multiple batch
+	 * requests. Regardless of the limit, batches are split so that requests
+	 * and worst-case responses fit into a single message.
+	 * 
+	 * @param maxRegistersInBatch
+	 *            the maximal number of registers in a batch request.
+	 */
+	public void setMaxRegistersInBatch(int maxRegistersInBatch) {
+		if (maxRegistersInBatch < 1) {
+			throw new IllegalArgumentException("Maximal number of registers in a batch must be a positive number.");
+		}
+
+		synchronized (requestLock) {
+			this.maxRegistersInBatch = maxRegistersInBatch;
+		}
+	}
+
+	/**
+	 * Returns the minimal time between two flushes of deferred writes to
+	 * registers of a registry.
+	 * 
+	 * @return the time in milliseconds.
+	 */
+	public long getWriteFlushInterval() {
+		synchronized (requestLock) {
+			return writeFlushInterval;
+		}
+	}
+
+	/**
+	 * Sets the minimal time between two flushes of deferred writes to
+	 * registers of a registry. Deferred writes to the same register that are
+	 * requested during this time are merged and only the last value is
+	 * written.
+	 * 
+	 * @param writeFlushInterval
+	 *            the time in milliseconds.
+	 * 
+	 * @see RegisterCollection#writeIntegerRegisterDeferred(int, int, long)
+	 */
+	public void setWriteFlushInterval(long writeFlushInterval) {
+		if (writeFlushInterval < 0) {
+			throw new IllegalArgumentException("Flush interval cannot be negative.");
+		}
+
+		synchronized (requestLock) {
+			this.writeFlushInterval = writeFlushInterval;
+		}
+	}
+
+	/**
+	 * Returns the time after which a waiting request is promoted to the next
+	 * higher priority class.
+	 * 
+	 * @return the time in milliseconds.
+	 */
+	public long getAgingInterval() {
+		synchronized (requestLock) {
+			return agingInterval;
+		}
+	}
+
+	/**
+	 * Sets the time after which a waiting request is promoted to the next
+	 * higher priority class. Aging ensures that requests with a low priority
+	 * are sent even if the gateway is saturated by requests with a higher
+	 * priority.
+	 * 
+	 * @param agingInterval
+	 *            the time in milliseconds.
+	 */
+	public void setAgingInterval(long agingInterval) {
+		if (agingInterval <= 0) {
+			throw new IllegalArgumentException("Aging interval must be a positive number.");
+		}
+
+		synchronized (requestLock) {
+			this.agingInterval = agingInterval;
+		}
+	}
+
+	/**
+	 * Returns the number of requests of a priority class that wait for
+	 * sending.
+	 * 
+	 * @param priority
+	 *            the priority class.
+	 * @return the number of waiting requests.
+	 */
+	public int getQueueDepth(RequestPriority priority) {
+		synchronized (requestLock) {
+			return waitingRequests[priority.ordinal()].size();
+		}
+	}
+
+	/**
+	 * Returns whether timeouts of requests are derived from observed
+	 * round-trip times.
+	 * 
+	 * @return true, if adaptive timeouts are enabled, false otherwise.
+	 */
+	public boolean isAdaptiveTimeouts() {
+		return adaptiveTimeouts;
+	}
+
+	/**
+	 * Enables or disables adaptive timeouts. If enabled, the timeout of a
+	 * request is derived from round-trip times of requests of the same type
+	 * observed for the registry. The adaptive timeout is limited by the
+	 * minimal and the maximal adaptive timeout and never exceeds the timeout
+	 * requested for the operation. Until enough round-trip times are observed,
+	 * the requested timeout is used.
+	 * 
+	 * @param adaptiveTimeouts
+	 *            true to enable adaptive timeouts, false to disable them.
+	 */
+	public void setAdaptiveTimeouts(boolean adaptiveTimeouts) {
+		this.adaptiveTimeouts = adaptiveTimeouts;
+	}
+
+	/**
+	 * Returns the minimal adaptive timeout.
+	 * 
+	 * @return the timeout in milliseconds.
+	 */
+	public long getMinAdaptiveTimeout() {
+		return minAdaptiveTimeout;
+	}
+
+	/**
+	 * Sets the minimal adaptive timeout.
+	 * 
+	 * @param minAdaptiveTimeout
+	 *            the timeout in milliseconds.
+	 */
+	public void setMinAdaptiveTimeout(long minAdaptiveTimeout) {
+		if (minAdaptiveTimeout <= 0) {
+			throw new IllegalArgumentException("Minimal adaptive timeout must be a positive number.");
+		}
+
+		this.minAdaptiveTimeout = minAdaptiveTimeout;
+	}
+
+	/**
+	 * Returns the maximal adaptive timeout.
+	 * 
+	 * @return the timeout in milliseconds.
+	 */
+	public long getMaxAdaptiveTimeout() {
+		return maxAdaptiveTimeout;
+	}
+
+	/**
+	 * Sets the maximal adaptive timeout.
+	 * 
+	 * @param maxAdaptiveTimeout
+	 *            the timeout in milliseconds.
+	 */
+	public void setMaxAdaptiveTimeout(long maxAdaptiveTimeout) {
+		if (maxAdaptiveTimeout <= 0) {
+			throw new IllegalArgumentException("Maximal adaptive timeout must be a positive number.");
+		}
+
+		this.maxAdaptiveTimeout = maxAdaptiveTimeout;
+	}
+
+	/**
+	 * Returns the smoothed round-trip time of requests of given type sent to a
+	 * registry.
+	 * 
+	 * @param registryId
+	 *            the identifier of registry.
+	 * @param type
+	 *            the type of requests.
+	 * @return the round-trip time in milliseconds or a negative value, if no
+	 *         request of the type was completed.
+	 */
+	public long getSmoothedRoundTripTime(int registryId, RequestType type) {
+		checkRegistryId(registryId);
+		return getRoundTripTimeEstimator(registryId, type).getSmoothedRtt();
+	}
+
+	/**
+	 * Returns the high (99th) percentile of recent round-trip times of requests
+	 * of given type sent to a registry.
+	 * 
+	 * @param registryId
+	 *            the identifier of registry.
+	 * @param type
+	 *            the type of requests.
+	 * @return the round-trip time in milliseconds or a negative value, if no
+	 *         request of the type was completed.
+	 */
+	public long getRoundTripTimePercentile(int registryId, RequestType type) {
+		checkRegistryId(registryId);
+		return getRoundTripTimeEstimator(registryId, type).getRttPercentile();
+	}
+
+	/**
+	 * Returns the adaptive timeout of requests of given type sent to a
+	 * registry.
+	 * 
+	 * @param registryId
+	 *            the identifier of registry.
+	 * @param type
+	 *            the type of requests.
+	 * @return the timeout in milliseconds or a negative value, if there is not
+	 *         enough observed round-trip times to estimate the timeout.
+	 */
+	public long getAdaptiveTimeout(int registryId, RequestType type) {
+		checkRegistryId(registryId);
+		return getRoundTripTimeEstimator(registryId, type).estimateTimeout(minAdaptiveTimeout,
+				Math.max(minAdaptiveTimeout, maxAdaptiveTimeout));
+	}
+
+	/**
+	 * Returns the number of consecutive failed requests after which requests
+	 * to a registry are rejected.
+	 * 
+	 * @return the number of failed requests, zero or negative value if
+	 *         requests are never rejected.
+	 */
+	public int getFailureThreshold() {
+		return failureThreshold;
+	}
+
+	/**
+	 * Sets the number of consecutive failed requests after which requests to a
+	 * registry are rejected. Requests to such a registry fail immediately with
+	 * {@link RegistryUnavailableException}, only occasional probe requests are
+	 * sent until the registry responds again. Requests are failed, if they are
+	 * not completed by a response, e.g., due to a timeout.
+	 * 
+	 * @param failureThreshold
+	 *            the number of failed requests, zero or negative value to
+	 *            never reject requests.
+	 */
+	public void setFailureThreshold(int failureThreshold) {
+		this.failureThreshold = failureThreshold;
+	}
+
+	/**
+	 * Returns the time between probe requests sent to an unavailable registry.
+	 * 
+	 * @return the time in milliseconds.
+	 */
+	public long getProbeInterval() {
+		return probeInterval;
+	}
+
+	/**
+	 * Sets the time between probe requests sent to an unavailable registry.
+	 * 
+	 * @param probeInterval
+	 *            the time in milliseconds.
+	 */
+	public void setProbeInterval(long probeInterval) {
+		if (probeInterval < 0) {
+			throw new IllegalArgumentException("Probe interval cannot be a negative number.");
+		}
+
+		this.probeInterval = probeInterval;
+	}
+
+	/**
+	 * Returns whether a registry is considered as unavailable, i.e., requests
+	 * to the registry are rejected without sending.
+	 * 
+	 * @param registryId
+	 *            the identifier of registry.
+	 * @return true, if the registry is unavailable, false otherwise.
+	 */
+	public boolean isRegistryUnavailable(int registryId) {
+		return getCircuitBreaker(registryId).isOpen();
+	}
+
+	/**
+	 * Starts the session ensuring GEP connection to available remote register
+	 * collections.
+	 */
+	@Override
+	public void start() {
+		serialOrderLock.lock();
+		try {
+			messenger.start(true);
+		} catch (Exception e) {
+			throw new RuntimeException("Start of session (based on GEP messenger) failed.", e);
+		} finally {
+			serialOrderLock.unlock();
+		}
+	}
+
+	@Override
+	public boolean isRunning() {
+		return messenger.isRunning();
+	}
+
+	/**
+	 * Stops the session ensuring GEP connection to available remote register
+	 * collections.
+	 * 
+	 * @param blocked
 	 *            true, if the current thread should be blocked until the
 	 *            session terminates, false otherwise.
 	 * @throws InterruptedException
 	 *             if any thread has interrupted the current thread during
 	 *             waiting for stopping of the session.
 	 */
-	public void stop(boolean blocked) throws InterruptedException {
-		synchronized (serialOrderLock) {
+	public void stop(boolean blocked) throws InterruptedException {
+		serialOrderLock.lock();
+		try {
+			messenger.stop(blocked);
+		} catch (InterruptedException e) {
+			throw e;
+		} catch (Exception e) {
+
+		} finally {
+			serialOrderLock.unlock();
+		}
+	}
+
+	/**
+	 * Stops the session without waiting for termination.
+	 */
+	public void stop() {
+		try {
+			stop(false);
+		} catch (InterruptedException ignore) {
+			// ignored
+		}
+	}
+
+	/**
+	 * Returns a remote register collection to a collection defined by given
+	 * (GEP) ID.
+	 * 
+	 * @param registryId
+	 *            the identifier of registry (destination ID of GEP messages)
+	 * @return the remote register collection.
+	 */
+	public RegisterCollection getRegisterCollection(int registryId) {
+		checkRegistryId(registryId);
+
+		synchronized (registerCollections) {
+			GepRegisterCollection registerCollection = registerCollections.get(registryId);
+			if (registerCollection == null) {
+				registerCollection = new GepRegisterCollection(registryId);
+				registerCollections.put(registryId, registerCollection);
+			}
+
+			return registerCollection;
+		}
+	}
+
+	/**
+	 * Executes retrieval of change hint.
+	 * 
+	 * @param registryId
+	 *            the identifier of registry (destination ID of GEP messages).
+	 * @param confirmedRegisterId
+	 *            the identifier of a register which is confirmed by the client
+	 *            as read without executing a real reading of a value. If the
+	 *            identifier is negative, no register is confirmed.
+	 * @param timeout
+	 *            the maximal amount of time in milliseconds to complete the
+	 *            operation.
+	 * @return the hint (identifier of a modifier register).
+	 */
+	public int getChangeHint(int registryId, int confirmedRegisterId, long timeout) {
+		return await(getChangeHintAsync(registryId, confirmedRegisterId, timeout));
+	}
+
+	/**
+	 * Executes asynchronous retrieval of change hint.
+	 * 
+	 * @param registryId
+	 *            the identifier of registry (destination ID of GEP messages).
+	 * @param confirmedRegisterId
+	 *            the identifier of a register which is confirmed by the client
+	 *            as read without executing a real reading of a value. If the
+	 *            identifier is negative, no register is confirmed.
+	 * @param timeout
+	 *            the maximal amount of time in milliseconds to complete the
+	 *            operation.
+	 * @return the future completed with the hint (identifier of a modifier
+	 *         register).
+	 */
+	private CompletableFuture<Integer> getChangeHintAsync(int registryId, int confirmedRegisterId, long timeout) {
+		if (confirmedRegisterId >= 0) {
+			checkRegisterId(confirmedRegisterId);
+		}
+
+		// prepare request
+		byte[] request = (confirmedRegisterId < 0) ? PREPARED_GET_CHANGE_HINT_REQUEST
+				: buildRequest(GET_CHANGE_HINT_REQUEST, confirmedRegisterId, null);
+
+		// send request and process response
+		return executeRequest(registryId, request, timeout, RequestPriority.CHANGE_HINT, RequestType.CHANGE_HINT,
+				"Retrieval of change hint failed.", new ResponseDecoder<Integer>() {
+					@Override
+					public Integer decode(byte[] response) {
+						return decodeNumber(response, 1);
+					}
+				});
+	}
+
+	/**
+	 * Executes asynchronous retrieval of multiple change hints using a single
+	 * request.
+	 * 
+	 * @param registryId
+	 *            the identifier of registry (destination ID of GEP messages).
+	 * @param confirmedRegisterIds
+	 *            the identifiers of registers which are confirmed by the
+	 *            client as read without executing a real reading of values or
+	 *            null, if no register is confirmed.
+	 * @param maxHints
+	 *            the maximal number of retrieved hints.
+	 * @param withValues
+	 *            true, if the registry should attach current values of
+	 *            changed registers (registers with attached values are marked
+	 *            as read), false otherwise.
+	 * @param timeout
+	 *            the maximal amount of time in milliseconds to complete the
+	 *            operation.
+	 * @return the future completed with the hints.
+	 */
+	private CompletableFuture<ChangeHint[]> getChangeHintsAsync(int registryId, int[] confirmedRegisterIds,
+			final int maxHints, final boolean withValues, long timeout) {
+		if (confirmedRegisterIds == null) {
+			confirmedRegisterIds = new int[0];
+		}
+
+		for (int registerId : confirmedRegisterIds) {
+			checkRegisterId(registerId);
+		}
+
+		// registers that do not fit into the request are not confirmed
+		confirmedRegisterIds = Arrays.copyOf(confirmedRegisterIds, countConfirmationsInRequest(confirmedRegisterIds));
+
+		// prepare request: the request code is followed by the maximal number
+		// of hints, flags, and identifiers of confirmed registers
+		byte[] confirmations = buildBatchRequest(GET_CHANGE_HINTS_REQUEST, confirmedRegisterIds);
+		byte[] request = new byte[confirmations.length + 2];
+		request[0] = (byte) GET_CHANGE_HINTS_REQUEST;
+		request[1] = (byte) maxHints;
+		request[2] = (byte) (withValues ? CHANGE_HINTS_WITH_VALUES : 0);
+		System.arraycopy(confirmations, 1, request, 3, confirmations.length - 1);
+
+		// send request and process response: each hint is an identifier of
+		// register followed by length and content of the value, if values are
+		// requested (zero length means that the value is not attached)
+		return executeRequest(registryId, request, timeout, RequestPriority.CHANGE_HINT, RequestType.CHANGE_HINT,
+				"Retrieval of change hints failed.", new ResponseDecoder<ChangeHint[]>() {
+					@Override
+					public ChangeHint[] decode(byte[] response) {
+						List<ChangeHint> result = new ArrayList<>();
+						int offset = 1;
+						while ((offset < response.length) && (result.size() < maxHints)) {
+							int registerId = decodeNumber(response, offset);
+							offset += getEncodedNumberLength(response, offset);
+							if (!withValues) {
+								result.add(new ChangeHint(registerId));
+								continue;
+							}
+
+							int length = decodeNumber(response, offset);
+							offset += getEncodedNumberLength(response, offset);
+							if ((length < 0) || (offset + length > response.length)) {
+								throw new RuntimeException("Invalid message format.");
+							}
+
+							if (length == 0) {
+								result.add(new ChangeHint(registerId));
+							} else {
+								Integer integerValue = null;
+								if (isEncodedNumber(response, offset, length)) {
+									integerValue = decodeNumber(response, offset);
+								}
+
+								result.add(new ChangeHint(registerId, integerValue,
+										Arrays.copyOfRange(response, offset, offset + length)));
+							}
+							offset += length;
+						}
+
+						return result.toArray(new ChangeHint[result.size()]);
+					}
+				});
+	}
+
+	/**
+	 * Executes read of an integer register.
+	 * 
+	 * @param registryId
+	 *            the identifier of registry (destination ID of GEP messages).
+	 * @param registerId
+	 *            the identifier of the register.
+	 * @param timeout
+	 *            the maximal amount of time in milliseconds to complete the
+	 *            operation.
+	 * @param priority
+	 *            the priority class of the request.
+	 * @return the future completed with the value of register.
+	 */
+	private CompletableFuture<Integer> readIntegerRegisterAsync(int registryId, int registerId, long timeout,
+			RequestPriority priority) {
+		checkRegisterId(registerId);
+
+		// prepare message with request
+		byte[] request = buildRequest(READ_INT_REGISTRY_REQUEST, registerId, null);
+
+		// send request and process response
+		return executeRequest(registryId, request, timeout, priority, RequestType.INTEGER_READ,
+				"Read operation failed.", new ResponseDecoder<Integer>() {
+					@Override
+					public Integer decode(byte[] response) {
+						return decodeNumber(response, 1);
+					}
+				});
+	}
+
+	/**
+	 * Executes write to an integer register.
+	 * 
+	 * @param registryId
+	 *            the identifier of registry (destination ID of GEP messages).
+	 * @param registerId
+	 *            the identifier of the register.
+	 * @param value
+	 *            the integer value to be written.
+	 * @param timeout
+	 *            the maximal amount of time in milliseconds to complete the
+	 *            operation.
+	 * @return the future completed when the value is written.
+	 */
+	private CompletableFuture<Void> writeIntegerRegisterAsync(int registryId, int registerId, int value,
+			long timeout) {
+		checkRegisterId(registerId);
+
+		// prepare message with request
+		byte[] request = buildRequest(WRITE_INT_REGISTRY_REQUEST, registerId, encodeNumber(value));
+
+		// send request and process response
+		return executeRequest(registryId, request, timeout, RequestPriority.INTERACTIVE_WRITE,
+				RequestType.INTEGER_WRITE, "Write operation failed.", null);
+	}
+
+	/**
+	 * Executes read of a binary register.
+	 * 
+	 * @param registryId
+	 *            the identifier of registry (destination ID of GEP messages).
+	 * @param registerId
+	 *            the identifier of the register.
+	 * @param timeout
+	 *            the maximal amount of time in milliseconds to complete the
+	 *            operation.
+	 * @return the value of register.
+	 * 
+	 * @throws RuntimeException
+	 *             when operation failed.
+	 */
+	public byte[] readBinaryRegister(int registryId, int registerId, long timeout) {
+		return await(readBinaryRegisterAsync(registryId, registerId, timeout, RequestPriority.FOREGROUND_READ));
+	}
+
+	/**
+	 * Executes asynchronous read of a binary register.
+	 * 
+	 * @param registryId
+	 *            the identifier of registry (destination ID of GEP messages).
+	 * @param registerId
+	 *            the identifier of the register.
+	 * @param timeout
+	 *            the maximal amount of time in milliseconds to complete the
+	 *            operation.
+	 * @param priority
+	 *            the priority class of the request.
+	 * @return the future completed with the value of register.
+	 */
+	private CompletableFuture<byte[]> readBinaryRegisterAsync(int registryId, int registerId, long timeout,
+			RequestPriority priority) {
+		checkRegisterId(registerId);
+
+		// prepare message with request
+		byte[] request = buildRequest(READ_BIN_REGISTRY_REQUEST, registerId, null);
+
+		// send request and process response
+		return executeRequest(registryId, request, timeout, priority, RequestType.BINARY_READ,
+				"Read operation failed.", new ResponseDecoder<byte[]>() {
+					@Override
+					public byte[] decode(byte[] response) {
+						byte[] result = new byte[response.length - 1];
+						System.arraycopy(response, 1, result, 0, result.length);
+						return result;
+					}
+				});
+	}
+
+	/**
+	 * Executes write of a binary register.
+	 * 
+	 * @param registryId
+	 *            the identifier of registry (destination ID of GEP messages).
+	 * @param registerId
+	 *            the identifier of the register.
+	 * @param value
+	 *            the value to be written.
+	 * @param timeout
+	 *            the maximal amount of time in milliseconds to complete the
+	 *            operation.
+	 */
+	public void writeBinaryRegister(int registryId, int registerId, byte[] value, long timeout) {
+		await(writeBinaryRegisterAsync(registryId, registerId, value, timeout));
+	}
+
+	/**
+	 * Executes asynchronous write of a binary register.
+	 * 
+	 * @param registryId
+	 *            the identifier of registry (destination ID of GEP messages).
+	 * @param registerId
+	 *            the identifier of the register.
+	 * @param value
+	 *            the value to be written.
+	 * @param timeout
+	 *            the maximal amount of time in milliseconds to complete the
+	 *            operation.
+	 * @return the future completed when the value is written.
+	 */
+	private CompletableFuture<Void> writeBinaryRegisterAsync(int registryId, int registerId, byte[] value,
+			long timeout) {
+		checkRegisterId(registerId);
+
+		// prepare message with request
+		byte[] request = buildRequest(WRITE_BIN_REGISTRY_REQUEST, registerId, value);
+
+		// send request and process response
+		return executeRequest(registryId, request, timeout, RequestPriority.INTERACTIVE_WRITE,
+				RequestType.BINARY_WRITE, "Write operation failed.", null);
+	}
+
+	/**
+	 * Executes read of multiple integer registers using a single request.
+	 * 
+	 * @param registryId
+	 *            the identifier of registry (destination ID of GEP messages).
+	 * @param registerIds
+	 *            the identifiers of registers.
+	 * @param timeout
+	 *            the maximal amount of time in milliseconds to complete the
+	 *            operation.
+	 * @param priority
+	 *            the priority class of the request.
+	 * @return the future completed with values of registers.
+	 */
+	private CompletableFuture<int[]> readIntegerRegistersAsync(int registryId, final int[] registerIds,
+			long timeout, RequestPriority priority) {
+		// prepare message with request
+		byte[] request = buildBatchRequest(READ_INT_REGISTRIES_REQUEST, registerIds);
+
+		// send request and process response
+		return executeRequest(registryId, request, timeout, priority, RequestType.INTEGER_BATCH_READ,
+				"Read operation failed.", new ResponseDecoder<int[]>() {
+					@Override
+					public int[] decode(byte[] response) {
+						int[] result = new int[registerIds.length];
+						int offset = 1;
+						for (int i = 0; i < result.length; i++) {
+							result[i] = decodeNumber(response, offset);
+							offset += getEncodedNumberLength(response, offset);
+						}
+
+						return result;
+					}
+				});
+	}
+
+	/**
+	 * Executes write to multiple integer registers using a single request.
+	 * 
+	 * @param registryId
+	 *            the identifier of registry (destination ID of GEP messages).
+	 * @param registerIds
+	 *            the identifiers of registers.
+	 * @param values
+	 *            the values to be written.
+	 * @param timeout
+	 *            the maximal amount of time in milliseconds to complete the
+	 *            operation.
+	 * @return the future completed when the values are written.
+	 */
+	private CompletableFuture<Void> writeIntegerRegistersAsync(int registryId, int[] registerIds, int[] values,
+			long timeout) {
+		// prepare message with request
+		byte[][] encodedValues = new byte[values.length][];
+		for (int i = 0; i < values.length; i++) {
+			encodedValues[i] = encodeNumber(values[i]);
+		}
+		byte[] request = buildBatchRequest(WRITE_INT_REGISTRIES_REQUEST, registerIds, encodedValues);
+
+		// send request and process response
+		return executeRequest(registryId, request, timeout, RequestPriority.INTERACTIVE_WRITE,
+				RequestType.INTEGER_BATCH_WRITE, "Write operation failed.", null);
+	}
+
+	/**
+	 * Sends a request and decodes the response when it is received. The
+	 * completed request is recorded in statistics of the register collection.
+	 * 
+	 * @param registryId
+	 *            the identifier of registry (destination ID of GEP messages).
+	 * @param request
+	 *            the encoded request.
+	 * @param timeout
+	 *            the maximal amount of time in milliseconds to complete the
+	 *            request.
+	 * @param priority
+	 *            the priority class of the request.
+	 * @param type
+	 *            the type of the request.
+	 * @param failureMessage
+	 *            the message of exception reporting a failed request.
+	 * @param decoder
+	 *            the decoder of response or null, if the request has no
+	 *            result.
+	 * @return the future completed with the decoded result.
+	 */
+	private <T> CompletableFuture<T> executeRequest(int registryId, byte[] request, long timeout,
+			RequestPriority priority, RequestType type, final String failureMessage, final ResponseDecoder<T> decoder) {
+		final RequestStatistics statistics = ((GepRegisterCollection) getRegisterCollection(registryId)).statistics;
+		final long startTime = System.nanoTime();
+		final CompletableFuture<byte[]> response = sendRequestAsync(registryId, request, timeout, priority, type);
+		final CompletableFuture<T> result = new CompletableFuture<>();
+		response.whenComplete((receivedResponse, failure) -> {
+			if (failure instanceof CancellationException) {
+				result.cancel(false);
+				return;
+			}
+
+			long latency = (System.nanoTime() - startTime) / 1000;
 			try {
-				messenger.stop(blocked);
-			} catch (InterruptedException e) {
-				throw e;
-			} catch (Exception e) {
+				if (failure != null) {
+					throw (failure instanceof CompletionException) ? failure.getCause() : failure;
+				}
+
+				checkResponse(receivedResponse);
+				T value = (decoder != null) ? decoder.decode(receivedResponse) : null;
+				statistics.recordRequest(type, latency, null);
+				result.complete(value);
+			} catch (RegistryUnavailableException e) {
+				statistics.recordRequest(type, -1, RequestStatistics.FailureCause.UNAVAILABLE);
+				result.completeExceptionally(e);
+			} catch (Throwable e) {
+				statistics.recordRequest(type, latency, getFailureCause(receivedResponse, e));
+				result.completeExceptionally(new RuntimeException(failureMessage, e));
+			}
+		});
+
+		// cancellation of the result cancels the request
+		result.whenComplete((value, failure) -> {
+			if (failure instanceof CancellationException) {
+				response.cancel(false);
+			}
+		});
+
+		return result;
+	}
+
+	/**
+	 * Sends a request without waiting for response. If the number of open
+	 * requests reached the limits for the gateway or the registry, the request
+	 * waits in the queue of its priority class until a request is completed.
+	 * Time spent in the queue is not included in the timeout. If adaptive
+	 * timeouts are enabled, the timeout can be shortened according to observed
+	 * round-trip times. If the registry is unavailable, the request is
+	 * rejected without sending.
+	 * 
+	 * @param registryId
+	 *            the identifier of registry (destination ID of GEP messages).
+	 * @param request
+	 *            the encoded request.
+	 * @param timeout
+	 *            the maximal amount of time in milliseconds to complete the
+	 *            request, i.e. to receive the response. Zero or negative value
+	 *            mean that there is no timeout defined for the operation.
+	 * @param priority
+	 *            the priority class of the request.
+	 * @param type
+	 *            the type of the request.
+	 * @return the future completed with the encoded response or with null, if
+	 *         no response was received.
+	 */
+	private CompletableFuture<byte[]> sendRequestAsync(int registryId, byte[] request, long timeout,
+			RequestPriority priority, RequestType type) {
+		final CircuitBreaker circuitBreaker = getCircuitBreaker(registryId);
+		if (circuitBreaker.isRejecting(failureThreshold)) {
+			CompletableFuture<byte[]> rejectedResponse = new CompletableFuture<>();
+			rejectedResponse.completeExceptionally(createUnavailableException(registryId));
+			return rejectedResponse;
+		}
 
+		final PendingRequest pendingRequest = new PendingRequest(registryId, request, timeout, priority, type,
+				circuitBreaker);
+		pendingRequest.response.whenComplete((response, failure) -> {
+			if ((failure instanceof CancellationException) && (pendingRequest.tag >= 0)) {
+				circuitBreaker.recordCancellation();
 			}
+
+			releaseRequest(pendingRequest);
+		});
+
+		synchronized (requestLock) {
+			waitingRequests[priority.ordinal()].addLast(pendingRequest);
 		}
+
+		dispatchRequests();
+		return pendingRequest.response;
 	}
 
 	/**
-	 * Stops the session without waiting for termination.
+	 * Sends waiting requests while there are free slots in the window of open
+	 * requests. Requests are sent in the order of their effective priority,
+	 * i.e., priority class improved by aging. Requests with the same effective
+	 * priority are sent in the order of their arrival. Requests to unavailable
+	 * registries are rejected.
 	 */
-	public void stop() {
-		try {
-			stop(false);
-		} catch (InterruptedException ignore) {
-			// ignored
+	private void dispatchRequests() {
+		while (true) {
+			// select waiting request that can be sent
+			PendingRequest pendingRequest = null;
+			boolean rejected = false;
+			synchronized (requestLock) {
+				if (openRequests.size() >= maxOpenRequests) {
+					return;
+				}
+
+				long now = MonotonicClock.INSTANCE.currentTimeMillis();
+				long bestPriority = Long.MAX_VALUE;
+				for (Deque<PendingRequest> queue : waitingRequests) {
+					// the first request of a registry with a free slot is the
+					// oldest (hence the best) candidate in the queue
+					for (PendingRequest waitingRequest : queue) {
+						if (openRequestsPerRegistry[waitingRequest.registryId] >= maxOpenRequestsPerRegistry) {
+							continue;
+						}
+
+						long priority = waitingRequest.priority.ordinal()
+								- (now - waitingRequest.queueTime) / agingInterval;
+						if ((priority < bestPriority) || ((priority == bestPriority)
+								&& (waitingRequest.queueTime < pendingRequest.queueTime))) {
+							bestPriority = priority;
+							pendingRequest = waitingRequest;
+						}
+						break;
+					}
+				}
+
+				if (pendingRequest == null) {
+					return;
+				}
+
+				waitingRequests[pendingRequest.priority.ordinal()].remove(pendingRequest);
+				rejected = !pendingRequest.circuitBreaker.allowRequest(failureThreshold);
+				if (!rejected) {
+					do {
+						tagCounter = (tagCounter + 1) % 1000;
+					} while (openRequests.containsKey(tagCounter));
+
+					pendingRequest.tag = tagCounter;
+					openRequests.put(pendingRequest.tag, pendingRequest);
+					timedOutRequests.remove(pendingRequest.tag);
+					openRequestsPerRegistry[pendingRequest.registryId]++;
+				}
+			}
+
+			if (rejected) {
+				pendingRequest.response.completeExceptionally(createUnavailableException(pendingRequest.registryId));
+			} else {
+				sendPendingRequest(pendingRequest);
+			}
 		}
 	}
 
 	/**
-	 * Returns a remote register collection to a collection defined by given
-	 * (GEP) ID.
+	 * Sends the message with a request that has been registered as an open
+	 * request.
 	 * 
-	 * @param registryId
-	 *            the identifier of registry (destination ID of GEP messages)
-	 * @return the remote register collection.
+	 * @param pendingRequest
+	 *            the request.
 	 */
-	public RegisterCollection getRegisterCollection(int registryId) {
-		if ((registryId < 0) || (registryId > 15)) {
-			throw new RuntimeException("Invalid registry identifier (allowed: 0-15)");
+	private void sendPendingRequest(final PendingRequest pendingRequest) {
+		final long timeout = getEffectiveTimeout(pendingRequest);
+		boolean sent;
+		try {
+			serialOrderLock.lock();
+			try {
+				pendingRequest.sendTime = MonotonicClock.INSTANCE.currentTimeMillis();
+				sent = messenger.sendMessage(pendingRequest.registryId, pendingRequest.request, pendingRequest.tag);
+			} finally {
+				serialOrderLock.unlock();
+			}
+		} catch (Exception e) {
+			pendingRequest.circuitBreaker.recordFailure(failureThreshold, probeInterval);
+			pendingRequest.response.completeExceptionally(new SendFailedException(e));
+			return;
+		}
+
+		if (!sent) {
+			pendingRequest.circuitBreaker.recordFailure(failureThreshold, probeInterval);
+			pendingRequest.response.completeExceptionally(new SendFailedException(null));
+			return;
 		}
 
-		synchronized (registerCollections) {
-			GepRegisterCollection registerCollection = registerCollections.get(registryId);
-			if (registerCollection == null) {
-				registerCollection = new GepRegisterCollection(registryId);
-				registerCollections.put(registryId, registerCollection);
+		// schedule completion of request without response
+		if (timeout > 0) {
+			ScheduledFuture<?> timeoutTask = timer.schedule(new Runnable() {
+				@Override
+				public void run() {
+					// the breaker must record the failure before the caller is
+					// notified
+					if (!pendingRequest.response.isDone()) {
+						pendingRequest.circuitBreaker.recordFailure(failureThreshold, probeInterval);
+					}
+
+					if (pendingRequest.response.complete(null)) {
+						// late response is used to measure round-trip time
+						synchronized (requestLock) {
+							if (!openRequests.containsKey(pendingRequest.tag)) {
+								timedOutRequests.put(pendingRequest.tag, pendingRequest);
+							}
+						}
+					}
+				}
+			}, timeout, TimeUnit.MILLISECONDS);
+
+			synchronized (requestLock) {
+				pendingRequest.timeoutTask = timeoutTask;
 			}
 
-			return registerCollection;
+			// the request can be completed before the timeout task is stored
+			if (pendingRequest.response.isDone()) {
+				timeoutTask.cancel(false);
+			}
 		}
 	}
 
 	/**
-	 * Executes retrieval of change hint.
+	 * Releases resources of a completed request and sends the next waiting
+	 * requests.
 	 * 
-	 * @param registryId
-	 *            the identifier of registry (destination ID of GEP messages).
-	 * @param confirmedRegisterId
-	 *            the identifier of a register which is confirmed by the client
-	 *            as read without executing a real reading of a value. If the
-	 *            identifier is negative, no register is confirmed.
-	 * @param timeout
-	 *            the maximal amount of time in milliseconds to complete the
-	 *            operation.
-	 * @return the hint (identifier of a modifier register).
+	 * @param pendingRequest
+	 *            the completed request.
 	 */
-	public int getChangeHint(int registryId, int confirmedRegisterId, long timeout) {
-		if (confirmedRegisterId >= 0) {
-			checkRegisterId(confirmedRegisterId);
+	private void releaseRequest(PendingRequest pendingRequest) {
+		ScheduledFuture<?> timeoutTask;
+		synchronized (requestLock) {
+			timeoutTask = pendingRequest.timeoutTask;
+			if ((pendingRequest.tag >= 0) && (openRequests.get(pendingRequest.tag) == pendingRequest)) {
+				openRequests.remove(pendingRequest.tag);
+				openRequestsPerRegistry[pendingRequest.registryId]--;
+			} else {
+				waitingRequests[pendingRequest.priority.ordinal()].remove(pendingRequest);
+			}
 		}
 
-		// prepare request
-		byte[] request = (confirmedRegisterId < 0) ? PREPARED_GET_CHANGE_HINT_REQUEST
-				: buildRequest(GET_CHANGE_HINT_REQUEST, confirmedRegisterId, null);
-
-		// send request and process response
-		try {
-			byte[] response = sendRequest(registryId, request, timeout);
-			checkResponse(response);
-
-			return decodeNumber(response, 1);
-		} catch (Exception e) {
-			throw new RuntimeException("Retrieval of change hint failed.", e);
+		if (timeoutTask != null) {
+			timeoutTask.cancel(false);
 		}
+
+		dispatchRequests();
 	}
 
 	/**
-	 * Executes read of an integer register.
-	 * 
-	 * @param registryId
-	 *            the identifier of registry (destination ID of GEP messages).
-	 * @param registerId
-	 *            the identifier of the register.
-	 * @param timeout
-	 *            the maximal amount of time in milliseconds to complete the
-	 *            operation.
-	 * @return the value of register.
+	 * Handles a received message. Change notices are routed to the register
+	 * collection regardless of their tag. Other messages complete the open
+	 * request with the same tag. A late response to a timed out request is
+	 * only used to measure the round-trip time.
 	 * 
-	 * @throws RuntimeException
-	 *             when operation failed.
+	 * @param tag
+	 *            the tag associated with the received message.
+	 * @param message
+	 *            the message content.
 	 */
-	private int readIntegerRegister(int registryId, int registerId, long timeout) throws RuntimeException {
-		checkRegisterId(registerId);
+	private void handleMessage(int tag, byte[] message) {
+		// completion of request runs callbacks, hence the time of receipt must
+		// be taken before completion
+		long receiveTime = MonotonicClock.INSTANCE.currentTimeMillis();
+
+		// change notices are recognized by the code, since a registry may send
+		// them with a tag of an open request
+		if ((message != null) && (message.length > 0) && ((message[0] & 0xFF) == CHANGE_NOTICE_MESSAGE)) {
+			handleChangeNotice(message);
+			return;
+		}
 
-		// prepare message with request
-		byte[] request = buildRequest(READ_INT_REGISTRY_REQUEST, registerId, null);
+		PendingRequest openRequest;
+		PendingRequest timedOutRequest;
+		synchronized (requestLock) {
+			openRequest = openRequests.get(tag);
+			timedOutRequest = (openRequest == null) ? timedOutRequests.remove(tag) : null;
+		}
 
-		// send request and process response
-		try {
-			byte[] response = sendRequest(registryId, request, timeout);
-			checkResponse(response);
+		if (openRequest != null) {
+			openRequest.circuitBreaker.recordSuccess();
+		}
 
-			return decodeNumber(response, 1);
-		} catch (Exception e) {
-			throw new RuntimeException("Read operation failed.", e);
+		if ((openRequest != null) && openRequest.response.complete(message)) {
+			getRoundTripTimeEstimator(openRequest.registryId, openRequest.type)
+					.addSample(receiveTime - openRequest.sendTime);
+		}
+
+		if (timedOutRequest != null) {
+			timedOutRequest.circuitBreaker.recordSuccess();
+			getRoundTripTimeEstimator(timedOutRequest.registryId, timedOutRequest.type)
+					.addSample(receiveTime - timedOutRequest.sendTime);
 		}
 	}
 
 	/**
-	 * Executes write to an integer register.
-	 * 
-	 * @param registryId
-	 *            the identifier of registry (destination ID of GEP messages).
-	 * @param registerId
-	 *            the identifier of the register.
-	 * @param value
-	 *            the integer value to be written.
-	 * @param timeout
-	 *            the maximal amount of time in milliseconds to complete the
-	 *            operation.
+	 * Handles a change notice sent by a registry. The notice is routed to
+	 * listeners of the register collection, malformed notices are ignored.
 	 * 
-	 * @throws RuntimeException
-	 *             when operation failed.
+	 * @param message
+	 *            the message content.
 	 */
-	private void writeIntegerRegister(int registryId, int registerId, int value, long timeout) throws RuntimeException {
-		checkRegisterId(registerId);
+	private void handleChangeNotice(byte[] message) {
+		if (message.length < 2) {
+			return;
+		}
 
-		// prepare message with request
-		byte[] request = buildRequest(WRITE_INT_REGISTRY_REQUEST, registerId, encodeNumber(value));
+		GepRegisterCollection registerCollection;
+		synchronized (registerCollections) {
+			registerCollection = registerCollections.get(message[1] & 0xFF);
+		}
 
-		// send request and process response
+		// notices of registries without register collection are ignored
+		if (registerCollection == null) {
+			return;
+		}
+
+		int[] registerIds;
 		try {
-			byte[] response = sendRequest(registryId, request, timeout);
-			checkResponse(response);
-		} catch (Exception e) {
-			throw new RuntimeException("Write operation failed.", e);
+			registerIds = decodeRegisterIds(message, 2);
+		} catch (RuntimeException e) {
+			return;
 		}
+
+		registerCollection.fireChangeNotice(registerIds);
 	}
 
 	/**
-	 * Executes read of a binary register.
-	 * 
-	 * @param registryId
-	 *            the identifier of registry (destination ID of GEP messages).
-	 * @param registerId
-	 *            the identifier of the register.
-	 * @param timeout
-	 *            the maximal amount of time in milliseconds to complete the
-	 *            operation.
-	 * @return the value of register.
+	 * Returns the timeout of a request that is going to be sent. If adaptive
+	 * timeouts are enabled and there are enough observed round-trip times, the
+	 * timeout is estimated from the round-trip times, but it never exceeds the
+	 * timeout of the request.
 	 * 
-	 * @throws RuntimeException
-	 *             when operation failed.
+	 * @param pendingRequest
+	 *            the request.
+	 * @return the timeout in milliseconds, zero or negative value mean no
+	 *         timeout.
 	 */
-	public byte[] readBinaryRegister(int registryId, int registerId, long timeout) {
-		checkRegisterId(registerId);
+	private long getEffectiveTimeout(PendingRequest pendingRequest) {
+		if ((pendingRequest.timeout <= 0) || (!adaptiveTimeouts)) {
+			return pendingRequest.timeout;
+		}
 
-		// prepare message with request
-		byte[] request = buildRequest(READ_BIN_REGISTRY_REQUEST, registerId, null);
+		long adaptiveTimeout = getAdaptiveTimeout(pendingRequest.registryId, pendingRequest.type);
+		return (adaptiveTimeout > 0) ? Math.min(adaptiveTimeout, pendingRequest.timeout) : pendingRequest.timeout;
+	}
 
-		// send request and process response
-		try {
-			byte[] response = sendRequest(registryId, request, timeout);
-			checkResponse(response);
+	/**
+	 * Returns the cause of a failed request.
+	 * 
+	 * @param response
+	 *            the received response or null, if no response was received.
+	 * @param failure
+	 *            the exception that failed the request.
+	 * @return the cause of failure.
+	 */
+	private static RequestStatistics.FailureCause getFailureCause(byte[] response, Throwable failure) {
+		if (failure instanceof SendFailedException) {
+			return RequestStatistics.FailureCause.SEND_FAILURE;
+		}
 
-			byte[] result = new byte[response.length - 1];
-			System.arraycopy(response, 1, result, 0, result.length);
-			return result;
-		} catch (Exception e) {
-			throw new RuntimeException("Read operation failed.", e);
+		if (response == null) {
+			return RequestStatistics.FailureCause.TIMEOUT;
+		}
+
+		if ((response.length > 0) && (response[0] != REQUEST_OK_RESPONSE)) {
+			return RequestStatistics.FailureCause.REJECTED;
 		}
+
+		return RequestStatistics.FailureCause.OTHER;
 	}
 
 	/**
-	 * Executes write of a binary register.
+	 * Creates exception that rejects a request to an unavailable registry.
 	 * 
 	 * @param registryId
-	 *            the identifier of registry (destination ID of GEP messages).
-	 * @param registerId
-	 *            the identifier of the register.
-	 * @param value
-	 *            the value to be written.
-	 * @param timeout
-	 *            the maximal amount of time in milliseconds to complete the
-	 *            operation.
+	 *            the identifier of registry.
+	 * @return the exception.
 	 */
-	public void writeBinaryRegister(int registryId, int registerId, byte[] value, long timeout) {
-		checkRegisterId(registerId);
+	private static RegistryUnavailableException createUnavailableException(int registryId) {
+		return new RegistryUnavailableException("Registry " + registryId + " is not responding.");
+	}
 
-		// prepare message with request
-		byte[] request = buildRequest(WRITE_BIN_REGISTRY_REQUEST, registerId, value);
+	/**
+	 * Returns the circuit breaker of a registry.
+	 * 
+	 * @param registryId
+	 *            the identifier of registry.
+	 * @return the circuit breaker.
+	 */
+	private CircuitBreaker getCircuitBreaker(int registryId) {
+		return ((GepRegisterCollection) getRegisterCollection(registryId)).circuitBreaker;
+	}
 
-		// send request and process response
-		try {
-			byte[] response = sendRequest(registryId, request, timeout);
-			checkResponse(response);
-		} catch (Exception e) {
-			throw new RuntimeException("Write operation failed.", e);
-		}
+	/**
+	 * Returns the estimator of round-trip times of requests of given type sent
+	 * to a registry.
+	 * 
+	 * @param registryId
+	 *            the identifier of registry.
+	 * @param type
+	 *            the type of requests.
+	 * @return the estimator.
+	 */
+	private RoundTripTimeEstimator getRoundTripTimeEstimator(int registryId, RequestType type) {
+		return roundTripTimes[registryId][type.ordinal()];
 	}
 
 	/**
-	 * Sends a request and waits for response.
+	 * Waits for completion of a request and returns its result.
 	 * 
 	 * @param request
-	 *            the encoded request.
-	 * @param timeout
-	 *            the maximal amount of time in milliseconds to complete the
-	 *            request, i.e. to receive the response. Zero or negative value
-	 *            mean that there is no timeout defined for the operation.
-	 * @return the encoded response or null, if no response was received.
+	 *            the future of request.
+	 * @return the result of request.
 	 * 
 	 * @throws RuntimeException
-	 *             when operation failed.
+	 *             when the request failed.
 	 */
-	private byte[] sendRequest(int registryId, byte[] request, long timeout) throws RuntimeException {
-		synchronized (serialOrderLock) {
-			try {
-				// initialize
-				int messageTag;
-				synchronized (requestLock) {
-					tagCounter = (tagCounter + 1) % 1000;
-					tagOfOpenRequest = tagCounter;
-					messageTag = tagOfOpenRequest;
-					receivedResponse = null;
-				}
-
-				long operationStart = MonotonicClock.INSTANCE.currentTimeMillis();
-
-				// send message with request
-				if (!messenger.sendMessage(registryId, request, messageTag)) {
-					throw new RuntimeException("Sending of request failed.");
-				}
-
-				// wait for receiving of the response
-				byte[] response = null;
-				synchronized (requestLock) {
-					try {
-						if (timeout > 0) {
-							long elapsedTime = MonotonicClock.INSTANCE.currentTimeMillis() - operationStart;
-							while ((0 <= elapsedTime) && (elapsedTime < timeout) && (receivedResponse == null)) {
-								requestLock.wait(timeout - elapsedTime);
-								elapsedTime = MonotonicClock.INSTANCE.currentTimeMillis() - operationStart;
-							}
-						} else {
-							while (receivedResponse == null) {
-								requestLock.wait();
-							}
-						}
-					} catch (InterruptedException e) {
-						throw new RuntimeException("Request interrupted.", e);
-					}
-
-					response = receivedResponse;
-					tagOfOpenRequest = -1;
-				}
-
-				return response;
-			} finally {
-				synchronized (requestLock) {
-					tagOfOpenRequest = -1;
-					receivedResponse = null;
-				}
+	private static <T> T await(CompletableFuture<T> request) throws RuntimeException {
+		try {
+			return request.get();
+		} catch (InterruptedException e) {
+			request.cancel(false);
+			throw new RuntimeException("Request interrupted.", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
 			}
+
+			throw new RuntimeException(e.getCause());
 		}
 	}
 
 	/**
-	 * Handles a received message.
+	 * Throws an exception, if the registry identifier is not valid.
 	 * 
-	 * @param tag
-	 *            the tag associated with the received message.
-	 * @param message
-	 *            the message content.
+	 * @param registryId
+	 *            the identifier of a registry.
 	 */
-	private void handleMessage(int tag, byte[] message) {
-		synchronized (requestLock) {
-			if ((tag >= 0) && (tag == tagOfOpenRequest)) {
-				receivedResponse = message;
-			}
-
-			requestLock.notifyAll();
+	private static void checkRegistryId(int registryId) {
+		if ((registryId < 0) || (registryId > 15)) {
+			throw new RuntimeException("Invalid registry identifier (allowed: 0-15)");
 		}
 	}
 
@@ -583,6 +2473,10 @@ public final class GepGateway implements Gateway {
 			throw new RuntimeException("No response from registry.");
 		}
 
+		if (response[0] == REQUEST_FAILED_RESPONSE) {
+			throw new RejectedRequestException();
+		}
+
 		if (response[0] != REQUEST_OK_RESPONSE) {
 			throw new RuntimeException("Request failed on registry.");
 		}
@@ -600,7 +2494,7 @@ public final class GepGateway implements Gateway {
 	 *            the payload to be attached at the end of the request.
 	 * @return the request.
 	 */
-	private static byte[] buildRequest(int requestCode, int registerId, byte[] payload) {
+	static byte[] buildRequest(int requestCode, int registerId, byte[] payload) {
 		if (payload == null) {
 			payload = EMPTY_PAYLOAD;
 		}
@@ -621,6 +2515,119 @@ public final class GepGateway implements Gateway {
 		return request;
 	}
 
+	/**
+	 * Builds a request containing a list of register ids.
+	 * 
+	 * @param requestCode
+	 *            the request code.
+	 * @param registerIds
+	 *            the identifiers of registers.
+	 * @return the request.
+	 */
+	private static byte[] buildBatchRequest(int requestCode, int[] registerIds) {
+		return buildBatchRequest(requestCode, registerIds, null);
+	}
+
+	/**
+	 * Returns the number of leading registers that can be confirmed by a
+	 * single request for multiple change hints, i.e., the number of leading
+	 * identifiers that fit into a message together with the header of the
+	 * request.
+	 * 
+	 * @param confirmedRegisterIds
+	 *            the identifiers of registers to be confirmed.
+	 * @return the number of registers.
+	 */
+	private static int countConfirmationsInRequest(int[] confirmedRegisterIds) {
+		// the request code, the maximal number of hints, and flags precede
+		// identifiers of confirmed registers
+		int length = 3;
+		int count = 0;
+		while (count < confirmedRegisterIds.length) {
+			length += (confirmedRegisterIds[count] < 128) ? 1 : 2;
+			if (length > MAX_MESSAGE_SIZE) {
+				break;
+			}
+			count++;
+		}
+
+		return count;
+	}
+
+	/**
+	 * Builds a request containing a list of register ids, each of them
+	 * followed by a payload.
+	 * 
+	 * @param requestCode
+	 *            the request code.
+	 * @param registerIds
+	 *            the identifiers of registers.
+	 * @param payloads
+	 *            the payloads attached after identifiers of registers or
+	 *            null, if no payloads are attached.
+	 * @return the request.
+	 */
+	private static byte[] buildBatchRequest(int requestCode, int[] registerIds, byte[][] payloads) {
+		int length = 1;
+		for (int i = 0; i < registerIds.length; i++) {
+			length += (registerIds[i] < 128) ? 1 : 2;
+			if (payloads != null) {
+				length += payloads[i].length;
+			}
+		}
+
+		byte[] request = new byte[length];
+		request[0] = (byte) requestCode;
+		int offset = 1;
+		for (int i = 0; i < registerIds.length; i++) {
+			int registerId = registerIds[i];
+			if (registerId < 128) {
+				request[offset++] = (byte) registerId;
+			} else {
+				request[offset++] = (byte) ((registerId / 256) | 0x80);
+				request[offset++] = (byte) (registerId % 256);
+			}
+
+			if (payloads != null) {
+				System.arraycopy(payloads[i], 0, request, offset, payloads[i].length);
+				offset += payloads[i].length;
+			}
+		}
+
+		return request;
+	}
+
+	/**
+	 * Decodes a sequence of register identifiers encoded in the same way as in
+	 * requests.
+	 * 
+	 * @param data
+	 *            the array of bytes.
+	 * @param offset
+	 *            the offset in data array where the first identifier starts.
+	 * @return the identifiers of registers.
+	 */
+	private static int[] decodeRegisterIds(byte[] data, int offset) {
+		int[] result = new int[data.length - offset];
+		int count = 0;
+		while (offset < data.length) {
+			int aByte = data[offset] & 0xFF;
+			if ((aByte & 0x80) == 0) {
+				result[count++] = aByte;
+				offset++;
+			} else {
+				if (offset + 1 >= data.length) {
+					throw new RuntimeException("Invalid message format.");
+				}
+
+				result[count++] = (aByte & 0x7F) * 256 + (data[offset + 1] & 0xFF);
+				offset += 2;
+			}
+		}
+
+		return Arrays.copyOf(result, count);
+	}
+
 	/**
 	 * Encodes a numeric value.
 	 * 
@@ -628,7 +2635,7 @@ public final class GepGateway implements Gateway {
 	 *            the value
 	 * @return the value encoded as variable-length sequence of bytes.
 	 */
-	private static byte[] encodeNumber(int value) {
+	static byte[] encodeNumber(int value) {
 		if (value == Integer.MIN_VALUE) {
 			return new byte[] { (byte) 0x40 };
 		}
@@ -671,7 +2678,7 @@ public final class GepGateway implements Gateway {
 	 *            the offset in data array where encoded numeric value starts.
 	 * @return the decoded value.
 	 */
-	private static int decodeNumber(byte[] data, int offset) {
+	static int decodeNumber(byte[] data, int offset) {
 		try {
 			int aByte = data[offset] & 0xFF;
 			boolean negativeValue = ((aByte & 0x40) != 0);
@@ -696,4 +2703,49 @@ public final class GepGateway implements Gateway {
 			throw new RuntimeException("Invalid message format.", e);
 		}
 	}
+
+	/**
+	 * Returns whether a sequence of bytes is exactly one encoded numeric
+	 * value.
+	 * 
+	 * @param data
+	 *            the array of bytes.
+	 * @param offset
+	 *            the offset in data array where the sequence starts.
+	 * @param length
+	 *            the length of the sequence.
+	 * @return true, if the sequence is an encoded numeric value, false
+	 *         otherwise.
+	 */
+	private static boolean isEncodedNumber(byte[] data, int offset, int length) {
+		if ((length < 1) || (length > 5)) {
+			return false;
+		}
+
+		for (int i = 0; i < length - 1; i++) {
+			if ((data[offset + i] & 0x80) == 0) {
+				return false;
+			}
+		}
+
+		return (data[offset + length - 1] & 0x80) == 0;
+	}
+
+	/**
+	 * Returns the number of bytes of an encoded numeric value.
+	 * 
+	 * @param data
+	 *            the array of bytes.
+	 * @param offset
+	 *            the offset in data array where encoded numeric value starts.
+	 * @return the number of bytes.
+	 */
+	private static int getEncodedNumberLength(byte[] data, int offset) {
+		int length = 1;
+		while ((data[offset + length - 1] & 0x80) != 0) {
+			length++;
+		}
+
+		return length;
+	}
 }
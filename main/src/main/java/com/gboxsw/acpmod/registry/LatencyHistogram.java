@@ -0,0 +1,317 @@
+package com.gboxsw.acpmod.registry;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram of latencies with logarithmic buckets and fixed memory footprint.
+ * Latencies below 16 microseconds are recorded exactly, larger latencies are
+ * recorded in buckets whose width is 1/16 of their lower bound, i.e., the
+ * relative error of reported values is at most 6.25%. All methods are
+ * implemented as thread-safe. Latencies are counted in striped counters
+ * without locking, hence recording never blocks.
+ */
+public class LatencyHistogram {
+
+	/**
+	 * Number of bits determining the number of buckets per power of two.
+	 */
+	private static final int SUB_BUCKET_BITS = 4;
+
+	/**
+	 * Number of buckets per power of two.
+	 */
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+	/**
+	 * Maximal recorded latency in microseconds (about 19 hours). Larger
+	 * latencies are recorded as the maximal latency.
+	 */
+	private static final long MAX_VALUE = (1L << 36) - 1;
+
+	/**
+	 * Number of buckets.
+	 */
+	private static final int BUCKET_COUNT = getBucketIndex(MAX_VALUE) + 1;
+
+	/**
+	 * Striped counters of recorded latencies in buckets. The counters are
+	 * created when the first latency is recorded in a bucket.
+	 */
+	private final AtomicReferenceArray<LongAdder> counts = new AtomicReferenceArray<>(BUCKET_COUNT);
+
+	/**
+	 * Sum of recorded latencies in microseconds.
+	 */
+	private final LongAdder totalLatency = new LongAdder();
+
+	/**
+	 * Records a latency.
+	 * 
+	 * @param latency
+	 *            the latency in microseconds.
+	 */
+	public void record(long latency) {
+		latency = Math.max(0, Math.min(latency, MAX_VALUE));
+		getCounter(getBucketIndex(latency)).increment();
+		totalLatency.add(latency);
+	}
+
+	/**
+	 * Resets the histogram. Latencies recorded concurrently with reset may or
+	 * may not be preserved.
+	 */
+	public void reset() {
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			LongAdder counter = counts.get(i);
+			if (counter != null) {
+				counter.reset();
+			}
+		}
+		totalLatency.reset();
+	}
+
+	/**
+	 * Returns the number of recorded latencies.
+	 * 
+	 * @return the number of latencies.
+	 */
+	public long getCount() {
+		long result = 0;
+		for (long count : getCounts()) {
+			result += count;
+		}
+
+		return result;
+	}
+
+	/**
+	 * Returns the mean latency.
+	 * 
+	 * @return the mean latency in microseconds or zero, if no latency was
+	 *         recorded.
+	 */
+	public double getMean() {
+		long count = getCount();
+		return (count == 0) ? 0 : (double) totalLatency.sum() / count;
+	}
+
+	/**
+	 * Returns the minimal recorded latency.
+	 * 
+	 * @return the lower bound of the minimal latency in microseconds or zero,
+	 *         if no latency was recorded.
+	 */
+	public long getMin() {
+		long[] bucketCounts = getCounts();
+		for (int i = 0; i < bucketCounts.length; i++) {
+			if (bucketCounts[i] > 0) {
+				return getLowerBound(i);
+			}
+		}
+
+		return 0;
+	}
+
+	/**
+	 * Returns the maximal recorded latency.
+	 * 
+	 * @return the upper bound of the maximal latency in microseconds or zero,
+	 *         if no latency was recorded.
+	 */
+	public long getMax() {
+		long[] bucketCounts = getCounts();
+		for (int i = bucketCounts.length - 1; i >= 0; i--) {
+			if (bucketCounts[i] > 0) {
+				return getUpperBound(i);
+			}
+		}
+
+		return 0;
+	}
+
+	/**
+	 * Returns the latency at given percentile, i.e., the latency such that the
+	 * given percentage of recorded latencies is lower or equal.
+	 * 
+	 * @param percentile
+	 *            the percentile between 0 and 100.
+	 * @return the upper bound of the latency in microseconds or zero, if no
+	 *         latency was recorded.
+	 */
+	public long getValueAtPercentile(double percentile) {
+		if ((percentile < 0) || (percentile > 100)) {
+			throw new IllegalArgumentException("Percentile must be between 0 and 100.");
+		}
+
+		long[] bucketCounts = getCounts();
+		long totalCount = 0;
+		for (long count : bucketCounts) {
+			totalCount += count;
+		}
+
+		if (totalCount <= 0) {
+			return 0;
+		}
+
+		long rank = Math.max(1, (long) Math.ceil(percentile / 100 * totalCount));
+		long count = 0;
+		for (int i = 0; i < bucketCounts.length; i++) {
+			count += bucketCounts[i];
+			if (count >= rank) {
+				return getUpperBound(i);
+			}
+		}
+
+		return getUpperBound(bucketCounts.length - 1);
+	}
+
+	/**
+	 * Returns clone of the histogram at given time (snapshot). The snapshot is
+	 * weakly consistent, i.e., latencies recorded concurrently may or may not
+	 * be included.
+	 * 
+	 * @return snapshot of the histogram.
+	 */
+	public LatencyHistogram createSnapshot() {
+		return create(getCounts(), totalLatency.sum());
+	}
+
+	/**
+	 * Creates a histogram of latencies recorded after a previous snapshot of
+	 * this histogram was created.
+	 * 
+	 * @param previousSnapshot
+	 *            the previous snapshot of this histogram.
+	 * @return the histogram with differences of counts.
+	 */
+	public LatencyHistogram createDelta(LatencyHistogram previousSnapshot) {
+		long[] bucketCounts = getCounts();
+		long[] previousCounts = previousSnapshot.getCounts();
+		for (int i = 0; i < bucketCounts.length; i++) {
+			bucketCounts[i] -= previousCounts[i];
+		}
+
+		return create(bucketCounts, totalLatency.sum() - previousSnapshot.totalLatency.sum());
+	}
+
+	/**
+	 * Creates a histogram containing latencies recorded in this and another
+	 * histogram.
+	 * 
+	 * @param other
+	 *            the other histogram.
+	 * @return the merged histogram.
+	 */
+	public LatencyHistogram merge(LatencyHistogram other) {
+		long[] bucketCounts = getCounts();
+		long[] otherCounts = other.getCounts();
+		for (int i = 0; i < bucketCounts.length; i++) {
+			bucketCounts[i] += otherCounts[i];
+		}
+
+		return create(bucketCounts, totalLatency.sum() + other.totalLatency.sum());
+	}
+
+	/**
+	 * Returns the counter of latencies in a bucket.
+	 * 
+	 * @param index
+	 *            the index of bucket.
+	 * @return the counter.
+	 */
+	private LongAdder getCounter(int index) {
+		LongAdder counter = counts.get(index);
+		if (counter == null) {
+			counts.compareAndSet(index, null, new LongAdder());
+			counter = counts.get(index);
+		}
+
+		return counter;
+	}
+
+	/**
+	 * Returns current number of recorded latencies in buckets.
+	 * 
+	 * @return the array with number of latencies indexed by index of bucket.
+	 */
+	private long[] getCounts() {
+		long[] result = new long[BUCKET_COUNT];
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			LongAdder counter = counts.get(i);
+			if (counter != null) {
+				result[i] = counter.sum();
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Creates a histogram with given content.
+	 * 
+	 * @param bucketCounts
+	 *            the number of latencies indexed by index of bucket.
+	 * @param totalLatency
+	 *            the sum of latencies in microseconds.
+	 * @return the histogram.
+	 */
+	private static LatencyHistogram create(long[] bucketCounts, long totalLatency) {
+		LatencyHistogram result = new LatencyHistogram();
+		for (int i = 0; i < bucketCounts.length; i++) {
+			if (bucketCounts[i] != 0) {
+				result.getCounter(i).add(bucketCounts[i]);
+			}
+		}
+		result.totalLatency.add(totalLatency);
+		return result;
+	}
+
+	/**
+	 * Returns the index of bucket for a latency.
+	 * 
+	 * @param latency
+	 *            the non-negative latency.
+	 * @return the index of bucket.
+	 */
+	private static int getBucketIndex(long latency) {
+		if (latency < SUB_BUCKETS) {
+			return (int) latency;
+		}
+
+		int shift = (63 - Long.numberOfLeadingZeros(latency)) - SUB_BUCKET_BITS;
+		return SUB_BUCKETS + shift * SUB_BUCKETS + (int) ((latency >> shift) - SUB_BUCKETS);
+	}
+
+	/**
+	 * Returns the lowest latency recorded in a bucket.
+	 * 
+	 * @param index
+	 *            the index of bucket.
+	 * @return the latency in microseconds.
+	 */
+	private static long getLowerBound(int index) {
+		if (index < SUB_BUCKETS) {
+			return index;
+		}
+
+		int shift = index / SUB_BUCKETS - 1;
+		return ((long) (index % SUB_BUCKETS + SUB_BUCKETS)) << shift;
+	}
+
+	/**
+	 * Returns the highest latency recorded in a bucket.
+	 * 
+	 * @param index
+	 *            the index of bucket.
+	 * @return the latency in microseconds.
+	 */
+	private static long getUpperBound(int index) {
+		if (index < SUB_BUCKETS) {
+			return index;
+		}
+
+		int shift = index / SUB_BUCKETS - 1;
+		return getLowerBound(index) + (1L << shift) - 1;
+	}
+}
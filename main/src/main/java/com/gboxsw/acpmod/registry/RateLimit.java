@@ -0,0 +1,129 @@
+package com.gboxsw.acpmod.registry;
+
+/**
+ * Budget of requests implemented as a token bucket. The bucket is refilled by
+ * a constant rate of permits per second and holds at most a given number of
+ * permits (burst). A single rate limit can be shared by multiple updaters.
+ */
+public class RateLimit {
+
+	/**
+	 * Number of permits added per second.
+	 */
+	private final double rate;
+
+	/**
+	 * Maximal number of permits in the bucket.
+	 */
+	private final int burst;
+
+	/**
+	 * Number of available permits.
+	 */
+	private double permits;
+
+	/**
+	 * Time (in nanoseconds) when the bucket was refilled last time.
+	 */
+	private long refillTime;
+
+	/**
+	 * Synchronization object.
+	 */
+	private final Object lock = new Object();
+
+	/**
+	 * Constructs the rate limit with full bucket.
+	 * 
+	 * @param rate
+	 *            the number of requests per second.
+	 * @param burst
+	 *            the maximal number of requests that can be executed without
+	 *            waiting.
+	 */
+	public RateLimit(double rate, int burst) {
+		if (!(rate > 0)) {
+			throw new IllegalArgumentException("Rate must be a positive number.");
+		}
+
+		if (burst < 1) {
+			throw new IllegalArgumentException("Burst must be a positive number.");
+		}
+
+		this.rate = rate;
+		this.burst = burst;
+		this.permits = burst;
+		this.refillTime = System.nanoTime();
+	}
+
+	/**
+	 * Returns the number of requests per second.
+	 * 
+	 * @return the number of requests per second.
+	 */
+	public double getRate() {
+		return rate;
+	}
+
+	/**
+	 * Returns the maximal number of requests that can be executed without
+	 * waiting.
+	 * 
+	 * @return the number of requests.
+	 */
+	public int getBurst() {
+		return burst;
+	}
+
+	/**
+	 * Acquires a permit for a request, if a permit is available.
+	 * 
+	 * @return true, if the permit was acquired, false otherwise.
+	 */
+	public boolean tryAcquire() {
+		synchronized (lock) {
+			refill();
+			if (permits < 1) {
+				return false;
+			}
+
+			permits--;
+			return true;
+		}
+	}
+
+	/**
+	 * Returns time remaining until a permit is available.
+	 * 
+	 * @return the time in milliseconds, zero if a permit is available.
+	 */
+	public long millisToPermit() {
+		synchronized (lock) {
+			refill();
+			if (permits >= 1) {
+				return 0;
+			}
+
+			return Math.max(1, (long) Math.ceil((1 - permits) * 1000 / rate));
+		}
+	}
+
+	/**
+	 * Returns an acquired permit that was not used.
+	 */
+	void release() {
+		synchronized (lock) {
+			permits = Math.min(burst, permits + 1);
+		}
+	}
+
+	/**
+	 * Adds permits accumulated since the last refill. This method must be
+	 * invoked from thread holding the lock.
+	 */
+	private void refill() {
+		long now = System.nanoTime();
+		permits = Math.min(burst, permits + (now - refillTime) * rate / 1_000_000_000.0);
+		refillTime = now;
+	}
+}
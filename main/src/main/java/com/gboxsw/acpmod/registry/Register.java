@@ -1,5 +1,8 @@
 package com.gboxsw.acpmod.registry;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.ReentrantLock;
+
 /**
  * Local representation (view) of a remote register.
  */
@@ -145,9 +148,16 @@ public final class Register {
 	private final boolean readOnly;
 
 	/**
-	 * Synchronization object for thread-safe access.
+	 * Number of successful reads in a row without change of value after which
+	 * the adaptive update interval is doubled.
+	 */
+	private static final int UNCHANGED_READS_TO_STRETCH = 3;
+
+	/**
+	 * Lock for thread-safe access. A reentrant lock (instead of a monitor)
+	 * does not pin a virtual thread to its carrier thread.
 	 */
-	private final Object lock = new Object();
+	private final ReentrantLock lock = new ReentrantLock();
 
 	/**
 	 * Time of the last value update.
@@ -159,6 +169,28 @@ public final class Register {
 	 */
 	private long updateInterval = 1000;
 
+	/**
+	 * Minimal update interval in milliseconds in adaptive mode or zero, if the
+	 * adaptive mode is disabled.
+	 */
+	private long minUpdateInterval = 0;
+
+	/**
+	 * Maximal update interval in milliseconds in adaptive mode.
+	 */
+	private long maxUpdateInterval = 0;
+
+	/**
+	 * Current update interval in milliseconds in adaptive mode.
+	 */
+	private long adaptiveUpdateInterval;
+
+	/**
+	 * Number of successful reads in a row that have not changed the value
+	 * since the last change of adaptive update interval.
+	 */
+	private int unchangedReadsInRow = 0;
+
 	/**
 	 * Codec for transforming remote values to local values and vice versa.
 	 */
@@ -185,6 +217,28 @@ public final class Register {
 	 */
 	private ChangeListener changeListener;
 
+	/**
+	 * Dispatcher delivering change events asynchronously or null, if the
+	 * listener is invoked by the thread that updated the value.
+	 */
+	private ChangeDispatcher changeDispatcher;
+
+	/**
+	 * Indicates whether a change event waits for asynchronous delivery.
+	 */
+	private boolean changePending = false;
+
+	/**
+	 * Indicates whether a delivery of change events is dispatched or running.
+	 */
+	private boolean deliveryScheduled = false;
+
+	/**
+	 * Time in nanoseconds ({@link System#nanoTime()}) of the first change
+	 * waiting for asynchronous delivery.
+	 */
+	private long pendingChangeNanos;
+
 	/**
 	 * Constructs register of a new connector.
 	 * 
@@ -224,35 +278,114 @@ public final class Register {
 	 * result of update.
 	 */
 	public void updateValue() {
-		Object oldValue = value;
-		ChangeListener listener = null;
+		updateValue(RequestPriority.FOREGROUND_READ);
+	}
+
+	/**
+	 * Updates value of the register using a read request of given priority
+	 * class. The method newer throws an exception as a result of update.
+	 * 
+	 * @param priority
+	 *            the priority class of the read request.
+	 */
+	void updateValue(RequestPriority priority) {
+		Object newValue = null;
+		CompletableFuture<?> read = null;
 		try {
 			// retrieve and decode value from remote register
-			Object newValue = null;
 			if (binaryMode) {
-				byte[] remoteValue = registerCollection.readBinaryRegister(registerId, connectionSettings.timeout);
-				newValue = ((Codec.BinaryCodec) codec).decodeRemoteBinaryValue(remoteValue);
+				CompletableFuture<byte[]> binaryRead = registerCollection.readBinaryRegisterAsync(registerId,
+						connectionSettings.timeout, priority);
+				read = binaryRead;
+				newValue = ((Codec.BinaryCodec) codec).decodeRemoteBinaryValue(binaryRead.get());
 			} else {
-				int remoteValue = registerCollection.readIntegerRegister(registerId, connectionSettings.timeout);
-				newValue = ((Codec.IntCodec) codec).decodeRemoteIntValue(remoteValue);
+				CompletableFuture<Integer> intRead = registerCollection.readIntegerRegisterAsync(registerId,
+						connectionSettings.timeout, priority);
+				read = intRead;
+				newValue = ((Codec.IntCodec) codec).decodeRemoteIntValue(intRead.get());
 			}
+		} catch (InterruptedException e) {
+			read.cancel(false);
+			Thread.currentThread().interrupt();
+		} catch (Exception ignore) {
+			// failed read is handled as an invalid result of decoding
+		}
 
-			if (newValue == null) {
-				throw new RuntimeException("Invalid result of decoding.");
-			}
+		completeUpdate(newValue);
+	}
+
+	/**
+	 * Updates value of the register using a value of integer register that was
+	 * retrieved by another request (e.g., a batch read).
+	 * 
+	 * @param remoteValue
+	 *            the value of remote integer register.
+	 */
+	void updateValue(int remoteValue) {
+		Object newValue = null;
+		try {
+			newValue = ((Codec.IntCodec) codec).decodeRemoteIntValue(remoteValue);
+		} catch (Exception ignore) {
+			// failed decoding is handled as an invalid result of decoding
+		}
+
+		completeUpdate(newValue);
+	}
 
-			// update local value
-			synchronized (lock) {
+	/**
+	 * Updates value of the register using a value of binary register that was
+	 * retrieved by another request (e.g., a batch read).
+	 * 
+	 * @param remoteValue
+	 *            the value of remote binary register.
+	 */
+	void updateValue(byte[] remoteValue) {
+		Object newValue = null;
+		try {
+			newValue = ((Codec.BinaryCodec) codec).decodeRemoteBinaryValue(remoteValue);
+		} catch (Exception ignore) {
+			// failed decoding is handled as an invalid result of decoding
+		}
+
+		completeUpdate(newValue);
+	}
+
+	/**
+	 * Completes update of the register as a failed read, e.g., if a batch read
+	 * of the register failed.
+	 */
+	void updateFailed() {
+		completeUpdate(null);
+	}
+
+	/**
+	 * Completes update of the register value and notifies the change listener,
+	 * if the value has been changed.
+	 * 
+	 * @param newValue
+	 *            the decoded value retrieved from remote register or null, if
+	 *            the read failed.
+	 */
+	private void completeUpdate(Object newValue) {
+		ChangeListener listener = null;
+		ChangeDispatcher dispatcher = null;
+		lock.lock();
+		try {
+			Object oldValue = value;
+			if (newValue != null) {
+				// update local value
 				value = newValue;
 				lastValidValue = value;
-				updateTimeMillis = MonotonicClock.INSTANCE.currentTimeMillis();
 				readFailsInRow = 0;
-				if (!value.equals(oldValue)) {
+				boolean changed = !value.equals(oldValue);
+				if (changed) {
 					listener = changeListener;
 				}
-			}
-		} catch (Exception e) {
-			synchronized (lock) {
+
+				if (minUpdateInterval > 0) {
+					adaptUpdateInterval(changed);
+				}
+			} else {
 				readFailsInRow++;
 
 				// invalidate value after failed read (if required)
@@ -262,9 +395,37 @@ public final class Register {
 						listener = changeListener;
 					}
 				}
+			}
 
-				updateTimeMillis = MonotonicClock.INSTANCE.currentTimeMillis();
+			updateTimeMillis = MonotonicClock.INSTANCE.currentTimeMillis();
+
+			// changes are coalesced with a change waiting for asynchronous
+			// delivery
+			if ((listener != null) && (changeDispatcher != null)) {
+				listener = null;
+				if (changePending) {
+					changeDispatcher.recordCoalescedChange();
+				} else {
+					changePending = true;
+					pendingChangeNanos = System.nanoTime();
+					if (!deliveryScheduled) {
+						deliveryScheduled = true;
+						dispatcher = changeDispatcher;
+					}
+				}
 			}
+		} finally {
+			lock.unlock();
+		}
+
+		if (dispatcher != null) {
+			final ChangeDispatcher deliveryDispatcher = dispatcher;
+			dispatcher.dispatch(new Runnable() {
+				@Override
+				public void run() {
+					deliverChanges(deliveryDispatcher);
+				}
+			});
 		}
 
 		if (listener != null) {
@@ -276,6 +437,65 @@ public final class Register {
 		}
 	}
 
+	/**
+	 * Delivers change events waiting for asynchronous delivery. The method
+	 * returns when no change event is waiting.
+	 * 
+	 * @param dispatcher
+	 *            the dispatcher that executes the delivery.
+	 */
+	private void deliverChanges(ChangeDispatcher dispatcher) {
+		while (true) {
+			ChangeListener listener;
+			long lagNanos;
+			lock.lock();
+			try {
+				if (!changePending) {
+					deliveryScheduled = false;
+					return;
+				}
+
+				changePending = false;
+				listener = changeListener;
+				lagNanos = System.nanoTime() - pendingChangeNanos;
+			} finally {
+				lock.unlock();
+			}
+
+			dispatcher.recordDelivery(lagNanos);
+			if (listener != null) {
+				try {
+					listener.onChange(this);
+				} catch (Exception ignore) {
+					// exceptions in listener are ignored
+				}
+			}
+		}
+	}
+
+	/**
+	 * Adapts the update interval in adaptive mode after a successful read. The
+	 * interval is halved (up to the minimal interval) when the value changes
+	 * and doubled (up to the maximal interval) after several reads without
+	 * change. This method must be invoked from thread holding the lock.
+	 * 
+	 * @param changed
+	 *            true, if the read changed the value, false otherwise.
+	 */
+	private void adaptUpdateInterval(boolean changed) {
+		if (changed) {
+			unchangedReadsInRow = 0;
+			adaptiveUpdateInterval = Math.max(minUpdateInterval, adaptiveUpdateInterval / 2);
+			return;
+		}
+
+		unchangedReadsInRow++;
+		if (unchangedReadsInRow >= UNCHANGED_READS_TO_STRETCH) {
+			unchangedReadsInRow = 0;
+			adaptiveUpdateInterval = Math.min(maxUpdateInterval, adaptiveUpdateInterval * 2);
+		}
+	}
+
 	/**
 	 * Returns milliseconds remaining to next update of value. The value 0
 	 * indicates that update must be executed immediately.
@@ -283,33 +503,68 @@ public final class Register {
 	 * @return the number of milliseconds to next update.
 	 */
 	public long millisToNextUpdate() {
-		synchronized (lock) {
-			long currentUpdateInterval = updateInterval;
-
-			// compute update interval in case of failed reads
-			if ((readFailsInRow > 0) && (connectionSettings.retryReadAfter > 0)) {
-				double retryInterval = connectionSettings.retryReadAfter;
-
-				// apply a deterministic backoff strategy
-				if (connectionSettings.retryReadAfterFactor >= 1) {
-					for (int i = 1; i < readFailsInRow; i++) {
-						retryInterval *= connectionSettings.retryReadAfterFactor;
-						if (retryInterval > updateInterval) {
-							break;
-						}
-					}
-				}
-
-				currentUpdateInterval = Math.min(updateInterval, Math.round(retryInterval));
-			}
-
+		lock.lock();
+		try {
+			final long currentUpdateInterval = getCurrentUpdateInterval();
 			final long timeFromLastUpdate = MonotonicClock.INSTANCE.currentTimeMillis() - updateTimeMillis;
 			if ((timeFromLastUpdate < 0) || (timeFromLastUpdate >= currentUpdateInterval)) {
 				return 0;
 			}
 
 			return currentUpdateInterval - timeFromLastUpdate;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Returns the monotonic time when the register became (or will become)
+	 * due for update.
+	 * 
+	 * @return the time in milliseconds or {@link Long#MIN_VALUE}, if the value
+	 *         of register has never been updated.
+	 */
+	long getDueTimeMillis() {
+		lock.lock();
+		try {
+			if (updateTimeMillis == Long.MIN_VALUE) {
+				return Long.MIN_VALUE;
+			}
+
+			return updateTimeMillis + getCurrentUpdateInterval();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Returns the update interval applied after the last update with respect
+	 * to failed reads. This method must be invoked from thread holding the
+	 * lock.
+	 * 
+	 * @return the interval in milliseconds.
+	 */
+	private long getCurrentUpdateInterval() {
+		final long baseUpdateInterval = (minUpdateInterval > 0) ? adaptiveUpdateInterval : updateInterval;
+
+		// compute update interval in case of failed reads
+		if ((readFailsInRow > 0) && (connectionSettings.retryReadAfter > 0)) {
+			double retryInterval = connectionSettings.retryReadAfter;
+
+			// apply a deterministic backoff strategy
+			if (connectionSettings.retryReadAfterFactor >= 1) {
+				for (int i = 1; i < readFailsInRow; i++) {
+					retryInterval *= connectionSettings.retryReadAfterFactor;
+					if (retryInterval > baseUpdateInterval) {
+						break;
+					}
+				}
+			}
+
+			return Math.min(baseUpdateInterval, Math.round(retryInterval));
 		}
+
+		return baseUpdateInterval;
 	}
 
 	/**
@@ -328,8 +583,11 @@ public final class Register {
 	 *         is invalid.
 	 */
 	public Object getValue() {
-		synchronized (lock) {
+		lock.lock();
+		try {
 			return value;
+		} finally {
+			lock.unlock();
 		}
 	}
 
@@ -359,14 +617,47 @@ public final class Register {
 		}
 	}
 
+	/**
+	 * Requests change of the register value without waiting for completion.
+	 * Writes to integer registers are queued in the register collection,
+	 * merged with other writes to the same register (the last value wins) and
+	 * the value of register is updated by a read that follows the flush of
+	 * queued writes. Binary registers are written and read immediately.
+	 * 
+	 * @param newValue
+	 *            the desired value of register.
+	 * @return the future completed when the value is written and the value of
+	 *         register is updated.
+	 */
+	public CompletableFuture<Void> setValueDeferred(Object newValue) {
+		if (readOnly) {
+			throw new UnsupportedOperationException("Value of read-only register cannot be changed.");
+		}
+
+		final long timeout = getConnectionSettings().timeout;
+		if (binaryMode) {
+			byte[] valueToSend = ((Codec.BinaryCodec) codec).encodeToBinaryValue(newValue);
+			return registerCollection.writeBinaryRegisterAsync(registerId, valueToSend, timeout).thenCompose(ignore -> {
+				return registerCollection.readBinaryRegisterAsync(registerId, timeout);
+			}).thenAccept(remoteValue -> updateValue(remoteValue));
+		} else {
+			int valueToSend = ((Codec.IntCodec) codec).encodeToIntValue(newValue);
+			return registerCollection.writeIntegerRegisterDeferred(registerId, valueToSend, timeout)
+					.thenAccept(remoteValue -> updateValue(remoteValue));
+		}
+	}
+
 	/**
 	 * Returns the last valid value of the register.
 	 * 
 	 * @return the last valid value of the register.
 	 */
 	public Object getLastValidValue() {
-		synchronized (lock) {
+		lock.lock();
+		try {
 			return lastValidValue;
+		} finally {
+			lock.unlock();
 		}
 	}
 
@@ -376,8 +667,11 @@ public final class Register {
 	 * @return the name.
 	 */
 	public String getName() {
-		synchronized (lock) {
+		lock.lock();
+		try {
 			return name;
+		} finally {
+			lock.unlock();
 		}
 	}
 
@@ -388,8 +682,11 @@ public final class Register {
 	 *            the desired name of register.
 	 */
 	public void setName(String name) {
-		synchronized (lock) {
+		lock.lock();
+		try {
 			this.name = name;
+		} finally {
+			lock.unlock();
 		}
 	}
 
@@ -399,8 +696,11 @@ public final class Register {
 	 * @return the description.
 	 */
 	public String getDescription() {
-		synchronized (lock) {
+		lock.lock();
+		try {
 			return description;
+		} finally {
+			lock.unlock();
 		}
 	}
 
@@ -411,8 +711,11 @@ public final class Register {
 	 *            the description.
 	 */
 	public void setDescription(String description) {
-		synchronized (lock) {
+		lock.lock();
+		try {
 			this.description = description;
+		} finally {
+			lock.unlock();
 		}
 	}
 
@@ -422,8 +725,11 @@ public final class Register {
 	 * @return the time in milliseconds of the last attempt to update the value.
 	 */
 	public long getUpdateTimeMillis() {
-		synchronized (lock) {
+		lock.lock();
+		try {
 			return updateTimeMillis;
+		} finally {
+			lock.unlock();
 		}
 	}
 
@@ -433,8 +739,11 @@ public final class Register {
 	 * @return the interval in milliseconds.
 	 */
 	public long getUpdateInterval() {
-		synchronized (lock) {
+		lock.lock();
+		try {
 			return updateInterval;
+		} finally {
+			lock.unlock();
 		}
 	}
 
@@ -449,8 +758,119 @@ public final class Register {
 			throw new IllegalArgumentException("Update interval of the register must be a non-zero positive value.");
 		}
 
-		synchronized (lock) {
+		lock.lock();
+		try {
 			this.updateInterval = updateInterval;
+			if (minUpdateInterval > 0) {
+				adaptiveUpdateInterval = Math.min(Math.max(updateInterval, minUpdateInterval), maxUpdateInterval);
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Enables adaptive mode, in which the update interval adapts to observed
+	 * changes of the value within given bounds. The interval is stretched when
+	 * the value has not changed over several reads and shrunk when a change is
+	 * observed. The adaptation starts at the configured update interval.
+	 * 
+	 * @param minUpdateInterval
+	 *            the minimal update interval in milliseconds.
+	 * @param maxUpdateInterval
+	 *            the maximal update interval in milliseconds.
+	 */
+	public void setAdaptiveUpdateInterval(long minUpdateInterval, long maxUpdateInterval) {
+		if (minUpdateInterval <= 0) {
+			throw new IllegalArgumentException("Minimal update interval must be a non-zero positive value.");
+		}
+
+		if (maxUpdateInterval < minUpdateInterval) {
+			throw new IllegalArgumentException("Maximal update interval cannot be less than the minimal interval.");
+		}
+
+		lock.lock();
+		try {
+			this.minUpdateInterval = minUpdateInterval;
+			this.maxUpdateInterval = maxUpdateInterval;
+			this.adaptiveUpdateInterval = Math.min(Math.max(updateInterval, minUpdateInterval), maxUpdateInterval);
+			this.unchangedReadsInRow = 0;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Disables adaptive mode, i.e., the register is updated with the
+	 * configured update interval.
+	 */
+	public void disableAdaptiveUpdateInterval() {
+		lock.lock();
+		try {
+			minUpdateInterval = 0;
+			maxUpdateInterval = 0;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Returns whether the update interval adapts to observed changes of the
+	 * value.
+	 * 
+	 * @return true, if the adaptive mode is enabled, false otherwise.
+	 */
+	public boolean isAdaptiveUpdateInterval() {
+		lock.lock();
+		try {
+			return minUpdateInterval > 0;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Returns the minimal update interval in adaptive mode.
+	 * 
+	 * @return the interval in milliseconds or zero, if the adaptive mode is
+	 *         disabled.
+	 */
+	public long getMinUpdateInterval() {
+		lock.lock();
+		try {
+			return minUpdateInterval;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Returns the maximal update interval in adaptive mode.
+	 * 
+	 * @return the interval in milliseconds or zero, if the adaptive mode is
+	 *         disabled.
+	 */
+	public long getMaxUpdateInterval() {
+		lock.lock();
+		try {
+			return maxUpdateInterval;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Returns the update interval that is currently applied, i.e., the adapted
+	 * interval in adaptive mode or the configured interval otherwise.
+	 * 
+	 * @return the interval in milliseconds.
+	 */
+	public long getEffectiveUpdateInterval() {
+		lock.lock();
+		try {
+			return (minUpdateInterval > 0) ? adaptiveUpdateInterval : updateInterval;
+		} finally {
+			lock.unlock();
 		}
 	}
 
@@ -460,8 +880,11 @@ public final class Register {
 	 * @return the connection settings of the register.
 	 */
 	public ConnectionSettings getConnectionSettings() {
-		synchronized (lock) {
+		lock.lock();
+		try {
 			return connectionSettings;
+		} finally {
+			lock.unlock();
 		}
 	}
 
@@ -476,8 +899,11 @@ public final class Register {
 			throw new NullPointerException("Connection settings cannot be null.");
 		}
 
-		synchronized (lock) {
+		lock.lock();
+		try {
 			this.connectionSettings = connectionSettings;
+		} finally {
+			lock.unlock();
 		}
 	}
 
@@ -487,8 +913,11 @@ public final class Register {
 	 * @return the listener.
 	 */
 	public ChangeListener getChangeListener() {
-		synchronized (lock) {
+		lock.lock();
+		try {
 			return changeListener;
+		} finally {
+			lock.unlock();
 		}
 	}
 
@@ -499,8 +928,45 @@ public final class Register {
 	 *            the desired listener of value change event.
 	 */
 	public void setChangeListener(ChangeListener changeListener) {
-		synchronized (lock) {
+		lock.lock();
+		try {
 			this.changeListener = changeListener;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Returns the dispatcher delivering change events asynchronously.
+	 * 
+	 * @return the dispatcher or null, if the listener is invoked by the thread
+	 *         that updated the value.
+	 */
+	public ChangeDispatcher getChangeDispatcher() {
+		lock.lock();
+		try {
+			return changeDispatcher;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Sets the dispatcher delivering change events asynchronously. If a
+	 * dispatcher is set, the listener is invoked by the executor of the
+	 * dispatcher and changes that occur before the listener is invoked are
+	 * coalesced, i.e., the listener observes only the latest value.
+	 * 
+	 * @param changeDispatcher
+	 *            the dispatcher or null, if the listener should be invoked by
+	 *            the thread that updated the value.
+	 */
+	public void setChangeDispatcher(ChangeDispatcher changeDispatcher) {
+		lock.lock();
+		try {
+			this.changeDispatcher = changeDispatcher;
+		} finally {
+			lock.unlock();
 		}
 	}
 
@@ -524,6 +990,16 @@ public final class Register {
 		return registerId;
 	}
 
+	/**
+	 * Returns whether the register operates in binary mode, i.e., whether it
+	 * reads values of a remote binary register.
+	 * 
+	 * @return true, if the register operates in binary mode.
+	 */
+	boolean isBinaryMode() {
+		return binaryMode;
+	}
+
 	/**
 	 * Returns whether the register is read-only.
 	 * 
@@ -1,10 +1,43 @@
 package com.gboxsw.acpmod.registry;
 
+import java.util.concurrent.CompletableFuture;
+
 /**
- * Interface to access a remote collection (group) of registers.
+ * Interface to access a remote collection (group) of registers. Asynchronous
+ * variants of operations return futures that are completed by the thread
+ * receiving responses, hence dependent actions should not block.
+ * 
+ * <p>
+ * Only the basic blocking operations must be implemented. Default
+ * implementations of asynchronous operations invoke the blocking operations
+ * in the calling thread and return completed futures, default implementations
+ * of batch operations access registers one by one, and change notices are not
+ * supported by default. Implementations override them, if the remote registry
+ * can be accessed more efficiently.
  */
 public interface RegisterCollection {
 
+	/**
+	 * The listener interface for receiving change notices sent by a remote
+	 * registry without a request. Listeners are invoked by the thread
+	 * receiving messages, hence they should not block.
+	 */
+	public interface ChangeNoticeListener {
+		/**
+		 * Invoked when the registry notified that values of registers have
+		 * been changed.
+		 * 
+		 * @param registerCollection
+		 *            the register collection whose registers have been
+		 *            changed.
+		 * @param registerIds
+		 *            the identifiers of changed registers. If the array is
+		 *            empty, the registry notified a change without specifying
+		 *            changed registers.
+		 */
+		void onChangeNotice(RegisterCollection registerCollection, int[] registerIds);
+	}
+
 	/**
 	 * Returns the gateway that provides access to the register collection.
 	 * 
@@ -30,6 +63,117 @@ public interface RegisterCollection {
 	 */
 	public int getChangeHintId(int confirmedRegisterId, long timeout);
 
+	/**
+	 * Asynchronously reads a change hint from register collection and
+	 * eventually notifies that the client is aware of change of a register.
+	 * The returned future is completed when the response is received or the
+	 * timeout elapses.
+	 * 
+	 * @param confirmedRegisterId
+	 *            the identifier of register that was not read, however the
+	 *            client confirms that it is aware of change of this register.
+	 *            If the value is negative, no register will be confirmed.
+	 * @param timeout
+	 *            the maximal amount of time in milliseconds to complete the
+	 *            read operation. Negative value or zero mean that there is no
+	 *            timeout for completing the operation.
+	 * @return the future completed with the id of changed register or negative
+	 *         value, if no register is marked as changed and unread.
+	 * @see #getChangeHintId(int, long)
+	 */
+	default CompletableFuture<Integer> getChangeHintIdAsync(int confirmedRegisterId, long timeout) {
+		CompletableFuture<Integer> result = new CompletableFuture<>();
+		try {
+			result.complete(getChangeHintId(confirmedRegisterId, timeout));
+		} catch (RuntimeException e) {
+			result.completeExceptionally(e);
+		}
+
+		return result;
+	}
+
+	/**
+	 * Reads multiple change hints from register collection using a single
+	 * request and eventually notifies that the client is aware of changes of
+	 * registers. If the remote registry does not support retrieval of
+	 * multiple hints, at most one hint without value is retrieved.
+	 * 
+	 * @param confirmedRegisterIds
+	 *            the identifiers of registers that were not read, however the
+	 *            client confirms that it is aware of their change. If the
+	 *            value is null, no register will be confirmed. Only registers
+	 *            counted by {@link #countConfirmableRegisters(int[])} are
+	 *            confirmed.
+	 * @param maxHints
+	 *            the maximal number of retrieved hints. The number of hints
+	 *            retrieved by a single request can be bounded by the
+	 *            implementation.
+	 * @param withValues
+	 *            true, if the hints should contain current values of changed
+	 *            registers, false otherwise. Registers whose values are
+	 *            retrieved are no longer marked as changed and unread.
+	 * @param timeout
+	 *            the maximal amount of time in milliseconds to complete the
+	 *            read operation. Negative value or zero mean that there is no
+	 *            timeout for completing the operation.
+	 * @return the hints, an empty array, if no register is marked as changed
+	 *         and unread.
+	 * @see #getChangeHintId(int, long)
+	 */
+	default ChangeHint[] getChangeHints(int[] confirmedRegisterIds, int maxHints, boolean withValues, long timeout) {
+		int confirmedRegisterId = ((confirmedRegisterIds != null) && (confirmedRegisterIds.length > 0))
+				? confirmedRegisterIds[0] : -1;
+		int hintId = getChangeHintId(confirmedRegisterId, timeout);
+		return (hintId >= 0) ? new ChangeHint[] { new ChangeHint(hintId) } : new ChangeHint[0];
+	}
+
+	/**
+	 * Asynchronously reads multiple change hints from register collection
+	 * using a single request.
+	 * 
+	 * @param confirmedRegisterIds
+	 *            the identifiers of registers that were not read, however the
+	 *            client confirms that it is aware of their change. If the
+	 *            value is null, no register will be confirmed.
+	 * @param maxHints
+	 *            the maximal number of retrieved hints.
+	 * @param withValues
+	 *            true, if the hints should contain current values of changed
+	 *            registers, false otherwise.
+	 * @param timeout
+	 *            the maximal amount of time in milliseconds to complete the
+	 *            read operation. Negative value or zero mean that there is no
+	 *            timeout for completing the operation.
+	 * @return the future completed with the hints.
+	 * @see #getChangeHints(int[], int, boolean, long)
+	 */
+	default CompletableFuture<ChangeHint[]> getChangeHintsAsync(int[] confirmedRegisterIds, int maxHints,
+			boolean withValues, long timeout) {
+		CompletableFuture<ChangeHint[]> result = new CompletableFuture<>();
+		try {
+			result.complete(getChangeHints(confirmedRegisterIds, maxHints, withValues, timeout));
+		} catch (RuntimeException e) {
+			result.completeExceptionally(e);
+		}
+
+		return result;
+	}
+
+	/**
+	 * Returns the number of leading registers in a list of registers to be
+	 * confirmed that are confirmed by a single request for multiple change
+	 * hints. Remaining registers are not confirmed by the request and they
+	 * should be confirmed by subsequent requests.
+	 * 
+	 * @param confirmedRegisterIds
+	 *            the identifiers of registers to be confirmed.
+	 * @return the number of leading registers confirmed by a single request.
+	 * @see #getChangeHints(int[], int, boolean, long)
+	 */
+	default int countConfirmableRegisters(int[] confirmedRegisterIds) {
+		return Math.min(confirmedRegisterIds.length, 1);
+	}
+
 	/**
 	 * Reads a value from an integer register.
 	 * 
@@ -45,6 +189,118 @@ public interface RegisterCollection {
 	 */
 	public int readIntegerRegister(int registerId, long timeout) throws RuntimeException;
 
+	/**
+	 * Asynchronously reads a value from an integer register.
+	 * 
+	 * @param registerId
+	 *            the identifier of the register.
+	 * @param timeout
+	 *            the maximal amount of time in milliseconds to complete the
+	 *            read operation. Negative value or zero mean that there is no
+	 *            timeout for completing the operation.
+	 * @return the future completed with the value of register.
+	 * @see #readIntegerRegister(int, long)
+	 */
+	default CompletableFuture<Integer> readIntegerRegisterAsync(int registerId, long timeout) {
+		CompletableFuture<Integer> result = new CompletableFuture<>();
+		try {
+			result.complete(readIntegerRegister(registerId, timeout));
+		} catch (RuntimeException e) {
+			result.completeExceptionally(e);
+		}
+
+		return result;
+	}
+
+	/**
+	 * Asynchronously reads a value from an integer register using a request of
+	 * given priority class.
+	 * 
+	 * @param registerId
+	 *            the identifier of the register.
+	 * @param timeout
+	 *            the maximal amount of time in milliseconds to complete the
+	 *            read operation. Negative value or zero mean that there is no
+	 *            timeout for completing the operation.
+	 * @param priority
+	 *            the priority class of the request.
+	 * @return the future completed with the value of register.
+	 * @see #readIntegerRegisterAsync(int, long)
+	 */
+	default CompletableFuture<Integer> readIntegerRegisterAsync(int registerId, long timeout,
+			RequestPriority priority) {
+		return readIntegerRegisterAsync(registerId, timeout);
+	}
+
+	/**
+	 * Reads values from multiple integer registers. Values are read by batch
+	 * requests, if they are supported by the remote registry. Otherwise,
+	 * values are read one by one.
+	 * 
+	 * @param registerIds
+	 *            the identifiers of registers.
+	 * @param timeout
+	 *            the maximal amount of time in milliseconds to complete a
+	 *            single read request. Negative value or zero mean that there is
+	 *            no timeout for completing the operation.
+	 * @return the values of registers in the order of given identifiers.
+	 * @throws RuntimeException
+	 *             if reading of any value failed.
+	 */
+	default int[] readIntegerRegisters(int[] registerIds, long timeout) throws RuntimeException {
+		int[] values = new int[registerIds.length];
+		for (int i = 0; i < registerIds.length; i++) {
+			values[i] = readIntegerRegister(registerIds[i], timeout);
+		}
+
+		return values;
+	}
+
+	/**
+	 * Asynchronously reads values from multiple integer registers.
+	 * 
+	 * @param registerIds
+	 *            the identifiers of registers.
+	 * @param timeout
+	 *            the maximal amount of time in milliseconds to complete a
+	 *            single read request. Negative value or zero mean that there is
+	 *            no timeout for completing the operation.
+	 * @return the future completed with values of registers in the order of
+	 *         given identifiers.
+	 * @see #readIntegerRegisters(int[], long)
+	 */
+	default CompletableFuture<int[]> readIntegerRegistersAsync(int[] registerIds, long timeout) {
+		CompletableFuture<int[]> result = new CompletableFuture<>();
+		try {
+			result.complete(readIntegerRegisters(registerIds, timeout));
+		} catch (RuntimeException e) {
+			result.completeExceptionally(e);
+		}
+
+		return result;
+	}
+
+	/**
+	 * Asynchronously reads values from multiple integer registers using
+	 * requests of given priority class.
+	 * 
+	 * @param registerIds
+	 *            the identifiers of registers.
+	 * @param timeout
+	 *            the maximal amount of time in milliseconds to complete a
+	 *            single read request. Negative value or zero mean that there is
+	 *            no timeout for completing the operation.
+	 * @param priority
+	 *            the priority class of requests.
+	 * @return the future completed with values of registers in the order of
+	 *         given identifiers.
+	 * @see #readIntegerRegistersAsync(int[], long)
+	 */
+	default CompletableFuture<int[]> readIntegerRegistersAsync(int[] registerIds, long timeout,
+			RequestPriority priority) {
+		return readIntegerRegistersAsync(registerIds, timeout);
+	}
+
 	/**
 	 * Writes a value to an integer register.
 	 * 
@@ -61,6 +317,113 @@ public interface RegisterCollection {
 	 */
 	public void writeIntegerRegister(int registerId, int value, long timeout) throws RuntimeException;
 
+	/**
+	 * Asynchronously writes a value to an integer register.
+	 * 
+	 * @param registerId
+	 *            the identifier of the register.
+	 * @param value
+	 *            the value to be written to the register.
+	 * @param timeout
+	 *            the maximal amount of time in milliseconds to complete the
+	 *            write operation. Negative value or zero mean that there is no
+	 *            timeout for completing the operation.
+	 * @return the future completed when the value is written.
+	 * @see #writeIntegerRegister(int, int, long)
+	 */
+	default CompletableFuture<Void> writeIntegerRegisterAsync(int registerId, int value, long timeout) {
+		CompletableFuture<Void> result = new CompletableFuture<>();
+		try {
+			writeIntegerRegister(registerId, value, timeout);
+			result.complete(null);
+		} catch (RuntimeException e) {
+			result.completeExceptionally(e);
+		}
+
+		return result;
+	}
+
+	/**
+	 * Writes values to multiple integer registers. Values are written by batch
+	 * requests, if they are supported by the remote registry. Otherwise,
+	 * values are written one by one.
+	 * 
+	 * @param registerIds
+	 *            the identifiers of registers.
+	 * @param values
+	 *            the values to be written to registers.
+	 * @param timeout
+	 *            the maximal amount of time in milliseconds to complete a
+	 *            single write request. Negative value or zero mean that there
+	 *            is no timeout for completing the operation.
+	 * @throws RuntimeException
+	 *             if writing of any value failed.
+	 */
+	default void writeIntegerRegisters(int[] registerIds, int[] values, long timeout) throws RuntimeException {
+		if (registerIds.length != values.length) {
+			throw new IllegalArgumentException("Number of values does not match the number of registers.");
+		}
+
+		for (int i = 0; i < registerIds.length; i++) {
+			writeIntegerRegister(registerIds[i], values[i], timeout);
+		}
+	}
+
+	/**
+	 * Asynchronously writes values to multiple integer registers.
+	 * 
+	 * @param registerIds
+	 *            the identifiers of registers.
+	 * @param values
+	 *            the values to be written to registers.
+	 * @param timeout
+	 *            the maximal amount of time in milliseconds to complete a
+	 *            single write request. Negative value or zero mean that there
+	 *            is no timeout for completing the operation.
+	 * @return the future completed when all values are written.
+	 * @see #writeIntegerRegisters(int[], int[], long)
+	 */
+	default CompletableFuture<Void> writeIntegerRegistersAsync(int[] registerIds, int[] values, long timeout) {
+		CompletableFuture<Void> result = new CompletableFuture<>();
+		try {
+			writeIntegerRegisters(registerIds, values, timeout);
+			result.complete(null);
+		} catch (RuntimeException e) {
+			result.completeExceptionally(e);
+		}
+
+		return result;
+	}
+
+	/**
+	 * Queues a write to an integer register. Queued writes are flushed
+	 * periodically using batch write requests followed by a batch read that
+	 * verifies written values. If a write to the same register is already
+	 * queued, only the last value is written.
+	 * 
+	 * @param registerId
+	 *            the identifier of the register.
+	 * @param value
+	 *            the value to be written to the register.
+	 * @param timeout
+	 *            the maximal amount of time in milliseconds to complete the
+	 *            write and the verifying read request. Negative value or zero
+	 *            mean that there is no timeout for completing the operation.
+	 * @return the future completed with the value read from the register
+	 *         after the flush.
+	 */
+	default CompletableFuture<Integer> writeIntegerRegisterDeferred(int registerId, int value, long timeout) {
+		CompletableFuture<Integer> result = new CompletableFuture<>();
+		try {
+			writeIntegerRegister(registerId, value, timeout);
+			result.complete(readIntegerRegister(registerId, timeout));
+		} catch (RuntimeException e) {
+			result.completeExceptionally(e);
+		}
+
+		return result;
+	}
+
 	/**
 	 * Reads a value from a binary register.
 	 * 
@@ -76,6 +439,117 @@ public interface RegisterCollection {
 	 */
 	public byte[] readBinaryRegister(int registerId, long timeout) throws RuntimeException;
 
+	/**
+	 * Asynchronously reads a value from a binary register.
+	 * 
+	 * @param registerId
+	 *            the identifier of the register.
+	 * @param timeout
+	 *            the maximal amount of time in milliseconds to complete the
+	 *            read operation. Negative value or zero mean that there is no
+	 *            timeout for completing the operation.
+	 * @return the future completed with the value of register.
+	 * @see #readBinaryRegister(int, long)
+	 */
+	default CompletableFuture<byte[]> readBinaryRegisterAsync(int registerId, long timeout) {
+		CompletableFuture<byte[]> result = new CompletableFuture<>();
+		try {
+			result.complete(readBinaryRegister(registerId, timeout));
+		} catch (RuntimeException e) {
+			result.completeExceptionally(e);
+		}
+
+		return result;
+	}
+
+	/**
+	 * Asynchronously reads a value from a binary register using a request of
+	 * given priority class.
+	 * 
+	 * @param registerId
+	 *            the identifier of the register.
+	 * @param timeout
+	 *            the maximal amount of time in milliseconds to complete the
+	 *            read operation. Negative value or zero mean that there is no
+	 *            timeout for completing the operation.
+	 * @param priority
+	 *            the priority class of the request.
+	 * @return the future completed with the value of register.
+	 * @see #readBinaryRegisterAsync(int, long)
+	 */
+	default CompletableFuture<byte[]> readBinaryRegisterAsync(int registerId, long timeout,
+			RequestPriority priority) {
+		return readBinaryRegisterAsync(registerId, timeout);
+	}
+
+	/**
+	 * Reads values from multiple binary registers. Depending on the
+	 * implementation, values are read by batch requests or one by one.
+	 * 
+	 * @param registerIds
+	 *            the identifiers of registers.
+	 * @param timeout
+	 *            the maximal amount of time in milliseconds to complete a
+	 *            single read request. Negative value or zero mean that there is
+	 *            no timeout for completing the operation.
+	 * @return the values of registers in the order of given identifiers.
+	 * @throws RuntimeException
+	 *             if reading of any value failed.
+	 */
+	default byte[][] readBinaryRegisters(int[] registerIds, long timeout) throws RuntimeException {
+		byte[][] values = new byte[registerIds.length][];
+		for (int i = 0; i < registerIds.length; i++) {
+			values[i] = readBinaryRegister(registerIds[i], timeout);
+		}
+
+		return values;
+	}
+
+	/**
+	 * Asynchronously reads values from multiple binary registers.
+	 * 
+	 * @param registerIds
+	 *            the identifiers of registers.
+	 * @param timeout
+	 *            the maximal amount of time in milliseconds to complete a
+	 *            single read request. Negative value or zero mean that there is
+	 *            no timeout for completing the operation.
+	 * @return the future completed with values of registers in the order of
+	 *         given identifiers.
+	 * @see #readBinaryRegisters(int[], long)
+	 */
+	default CompletableFuture<byte[][]> readBinaryRegistersAsync(int[] registerIds, long timeout) {
+		CompletableFuture<byte[][]> result = new CompletableFuture<>();
+		try {
+			result.complete(readBinaryRegisters(registerIds, timeout));
+		} catch (RuntimeException e) {
+			result.completeExceptionally(e);
+		}
+
+		return result;
+	}
+
+	/**
+	 * Asynchronously reads values from multiple binary registers using
+	 * requests of given priority class.
+	 * 
+	 * @param registerIds
+	 *            the identifiers of registers.
+	 * @param timeout
+	 *            the maximal amount of time in milliseconds to complete a
+	 *            single read request. Negative value or zero mean that there is
+	 *            no timeout for completing the operation.
+	 * @param priority
+	 *            the priority class of requests.
+	 * @return the future completed with values of registers in the order of
+	 *         given identifiers.
+	 * @see #readBinaryRegistersAsync(int[], long)
+	 */
+	default CompletableFuture<byte[][]> readBinaryRegistersAsync(int[] registerIds, long timeout,
+			RequestPriority priority) {
+		return readBinaryRegistersAsync(registerIds, timeout);
+	}
+
 	/**
 	 * Writes a value to a binary register.
 	 * 
@@ -92,6 +566,54 @@ public interface RegisterCollection {
 	 */
 	public void writeBinaryRegister(int registerId, byte[] value, long timeout) throws RuntimeException;
 
+	/**
+	 * Asynchronously writes a value to a binary register.
+	 * 
+	 * @param registerId
+	 *            the identifier of the register.
+	 * @param value
+	 *            the value to be written to the register.
+	 * @param timeout
+	 *            the maximal amount of time in milliseconds to complete the
+	 *            write operation. Negative value or zero mean that there is no
+	 *            timeout for completing the operation.
+	 * @return the future completed when the value is written.
+	 * @see #writeBinaryRegister(int, byte[], long)
+	 */
+	default CompletableFuture<Void> writeBinaryRegisterAsync(int registerId, byte[] value, long timeout) {
+		CompletableFuture<Void> result = new CompletableFuture<>();
+		try {
+			writeBinaryRegister(registerId, value, timeout);
+			result.complete(null);
+		} catch (RuntimeException e) {
+			result.completeExceptionally(e);
+		}
+
+		return result;
+	}
+
+	/**
+	 * Adds a listener that receives change notices sent by the remote registry.
+	 * If the registry does not send change notices, the listener is never
+	 * invoked and changes must be detected by polling.
+	 * 
+	 * @param listener
+	 *            the listener.
+	 */
+	default void addChangeNoticeListener(ChangeNoticeListener listener) {
+		// change notices are not supported by default
+	}
+
+	/**
+	 * Removes a listener of change notices.
+	 * 
+	 * @param listener
+	 *            the listener.
+	 */
+	default void removeChangeNoticeListener(ChangeNoticeListener listener) {
+		// change notices are not supported by default
+	}
+
 	/**
 	 * Returns statistics of requests.
 	 * 
@@ -0,0 +1,21 @@
+package com.gboxsw.acpmod.registry;
+
+/**
+ * Exception indicating that a request was rejected without sending, since the
+ * registry did not respond to recent requests and it is considered as
+ * unavailable.
+ */
+public class RegistryUnavailableException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Constructs the exception.
+	 * 
+	 * @param message
+	 *            the detail message.
+	 */
+	public RegistryUnavailableException(String message) {
+		super(message);
+	}
+}
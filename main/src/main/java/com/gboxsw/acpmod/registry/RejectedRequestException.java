@@ -0,0 +1,18 @@
+package com.gboxsw.acpmod.registry;
+
+/**
+ * Exception indicating that the registry replied that the request failed,
+ * e.g., since the request refers to an invalid register or the registry does
+ * not support the request.
+ */
+public class RejectedRequestException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Constructs the exception.
+	 */
+	public RejectedRequestException() {
+		super("Request failed on registry.");
+	}
+}
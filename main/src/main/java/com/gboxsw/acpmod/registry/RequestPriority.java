@@ -0,0 +1,28 @@
+package com.gboxsw.acpmod.registry;
+
+/**
+ * Priority classes of requests sent to remote registers. Requests waiting for
+ * sending are ordered by their priority class. Classes are listed in the order
+ * from the highest priority to the lowest priority.
+ */
+public enum RequestPriority {
+	/**
+	 * Writes requested by an operator or a control loop.
+	 */
+	INTERACTIVE_WRITE,
+
+	/**
+	 * Requests for change hints.
+	 */
+	CHANGE_HINT,
+
+	/**
+	 * Reads requested by an application, e.g., in order to display the value.
+	 */
+	FOREGROUND_READ,
+
+	/**
+	 * Periodical reads refreshing values of registers.
+	 */
+	BACKGROUND_REFRESH
+}
@@ -1,24 +1,80 @@
 package com.gboxsw.acpmod.registry;
 
+import java.util.concurrent.atomic.LongAdder;
+
 /**
- * Statistics of requests. All methods are implemented as thread-safe.
+ * Statistics of requests. Besides the total number of requests and failed
+ * requests, the statistics contain histograms of latencies for each type of
+ * request and the number of failed requests for each cause of failure. All
+ * methods are implemented as thread-safe. Requests are counted in striped
+ * counters without locking, hence recording of a request never blocks and
+ * values read during concurrent updates (including snapshots) are weakly
+ * consistent.
  */
 public class RequestStatistics {
 
+	/**
+	 * Causes of failed requests.
+	 */
+	public static enum FailureCause {
+		/**
+		 * No response was received before the timeout elapsed.
+		 */
+		TIMEOUT,
+
+		/**
+		 * The registry replied that the request failed.
+		 */
+		REJECTED,
+
+		/**
+		 * Sending of the request failed.
+		 */
+		SEND_FAILURE,
+
+		/**
+		 * The request was not sent, since the registry is unavailable.
+		 */
+		UNAVAILABLE,
+
+		/**
+		 * Other cause, e.g., an invalid response.
+		 */
+		OTHER
+	}
+
 	/**
 	 * Total number of requests.
 	 */
-	private long totalRequests = 0;
+	private final LongAdder totalRequests = new LongAdder();
 
 	/**
 	 * The number of failed requests.
 	 */
-	private long failedRequests = 0;
+	private final LongAdder failedRequests = new LongAdder();
+
+	/**
+	 * The number of failed requests indexed by ordinal of failure cause.
+	 */
+	private final LongAdder[] failuresByCause = new LongAdder[FailureCause.values().length];
 
 	/**
-	 * Synchronization object.
+	 * Histograms of latencies indexed by ordinal of request type.
 	 */
-	private final Object lock = new Object();
+	private final LatencyHistogram[] latencies = new LatencyHistogram[RequestType.values().length];
+
+	/**
+	 * Constructs empty statistics.
+	 */
+	public RequestStatistics() {
+		for (int i = 0; i < failuresByCause.length; i++) {
+			failuresByCause[i] = new LongAdder();
+		}
+
+		for (int i = 0; i < latencies.length; i++) {
+			latencies[i] = new LatencyHistogram();
+		}
+	}
 
 	/**
 	 * Counts a request.
@@ -27,21 +83,49 @@ public class RequestStatistics {
 	 *            true, if the request is failed, false otherwise.
 	 */
 	public void countRequest(boolean failed) {
-		synchronized (lock) {
-			totalRequests++;
-			if (failed) {
-				failedRequests++;
-			}
+		totalRequests.increment();
+		if (failed) {
+			failedRequests.increment();
+		}
+	}
+
+	/**
+	 * Records a completed request.
+	 * 
+	 * @param type
+	 *            the type of request.
+	 * @param latency
+	 *            the time in microseconds between submission and completion
+	 *            of the request or a negative value, if the latency should not
+	 *            be recorded.
+	 * @param failureCause
+	 *            the cause of failure or null, if the request succeeded.
+	 */
+	public void recordRequest(RequestType type, long latency, FailureCause failureCause) {
+		totalRequests.increment();
+		if (failureCause != null) {
+			failedRequests.increment();
+			failuresByCause[failureCause.ordinal()].increment();
+		}
+
+		if (latency >= 0) {
+			latencies[type.ordinal()].record(latency);
 		}
 	}
 
 	/**
-	 * Resets statistics.
+	 * Resets statistics. Requests recorded concurrently with reset may or may
+	 * not be preserved.
 	 */
 	public void reset() {
-		synchronized (lock) {
-			totalRequests = 0;
-			failedRequests = 0;
+		totalRequests.reset();
+		failedRequests.reset();
+		for (LongAdder counter : failuresByCause) {
+			counter.reset();
+		}
+
+		for (LatencyHistogram histogram : latencies) {
+			histogram.reset();
 		}
 	}
 
@@ -51,9 +135,7 @@ public class RequestStatistics {
 	 * @return the total number of requests.
 	 */
 	public long getTotalRequests() {
-		synchronized (lock) {
-			return totalRequests;
-		}
+		return totalRequests.sum();
 	}
 
 	/**
@@ -62,9 +144,29 @@ public class RequestStatistics {
 	 * @return the number of failed requests.
 	 */
 	public long getFailedRequests() {
-		synchronized (lock) {
-			return failedRequests;
-		}
+		return failedRequests.sum();
+	}
+
+	/**
+	 * Returns the number of requests failed due to given cause.
+	 * 
+	 * @param cause
+	 *            the cause of failure.
+	 * @return the number of failed requests.
+	 */
+	public long getFailedRequests(FailureCause cause) {
+		return failuresByCause[cause.ordinal()].sum();
+	}
+
+	/**
+	 * Returns the histogram of latencies of requests of given type.
+	 * 
+	 * @param type
+	 *            the type of requests.
+	 * @return the snapshot of histogram with latencies in microseconds.
+	 */
+	public LatencyHistogram getLatencies(RequestType type) {
+		return latencies[type.ordinal()].createSnapshot();
 	}
 
 	/**
@@ -74,9 +176,63 @@ public class RequestStatistics {
 	 */
 	public RequestStatistics createSnapshot() {
 		RequestStatistics result = new RequestStatistics();
-		synchronized (lock) {
-			result.totalRequests = totalRequests;
-			result.failedRequests = failedRequests;
+		result.totalRequests.add(totalRequests.sum());
+		result.failedRequests.add(failedRequests.sum());
+		for (int i = 0; i < failuresByCause.length; i++) {
+			result.failuresByCause[i].add(failuresByCause[i].sum());
+		}
+
+		for (int i = 0; i < latencies.length; i++) {
+			result.latencies[i] = latencies[i].createSnapshot();
+		}
+
+		return result;
+	}
+
+	/**
+	 * Creates statistics of requests recorded after a previous snapshot of
+	 * these statistics was created. The method allows periodical scraping of
+	 * statistics.
+	 * 
+	 * @param previousSnapshot
+	 *            the previous snapshot of these statistics.
+	 * @return the statistics with differences.
+	 */
+	public RequestStatistics createDelta(RequestStatistics previousSnapshot) {
+		RequestStatistics result = createSnapshot();
+		RequestStatistics previous = previousSnapshot.createSnapshot();
+		result.totalRequests.add(-previous.totalRequests.sum());
+		result.failedRequests.add(-previous.failedRequests.sum());
+		for (int i = 0; i < result.failuresByCause.length; i++) {
+			result.failuresByCause[i].add(-previous.failuresByCause[i].sum());
+		}
+
+		for (int i = 0; i < result.latencies.length; i++) {
+			result.latencies[i] = result.latencies[i].createDelta(previous.latencies[i]);
+		}
+
+		return result;
+	}
+
+	/**
+	 * Creates statistics containing requests recorded in these and other
+	 * statistics, e.g., statistics of multiple register collections.
+	 * 
+	 * @param other
+	 *            the other statistics.
+	 * @return the merged statistics.
+	 */
+	public RequestStatistics merge(RequestStatistics other) {
+		RequestStatistics result = createSnapshot();
+		RequestStatistics otherSnapshot = other.createSnapshot();
+		result.totalRequests.add(otherSnapshot.totalRequests.sum());
+		result.failedRequests.add(otherSnapshot.failedRequests.sum());
+		for (int i = 0; i < result.failuresByCause.length; i++) {
+			result.failuresByCause[i].add(otherSnapshot.failuresByCause[i].sum());
+		}
+
+		for (int i = 0; i < result.latencies.length; i++) {
+			result.latencies[i] = result.latencies[i].merge(otherSnapshot.latencies[i]);
 		}
 
 		return result;
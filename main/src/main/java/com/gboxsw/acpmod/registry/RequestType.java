@@ -0,0 +1,42 @@
+package com.gboxsw.acpmod.registry;
+
+/**
+ * Types of requests sent to remote registers. Batch requests have their own
+ * types, since their round-trip times grow with the number of registers.
+ */
+public enum RequestType {
+	/**
+	 * Read of integer registers.
+	 */
+	INTEGER_READ,
+
+	/**
+	 * Read of binary registers.
+	 */
+	BINARY_READ,
+
+	/**
+	 * Write to integer registers.
+	 */
+	INTEGER_WRITE,
+
+	/**
+	 * Write to binary registers.
+	 */
+	BINARY_WRITE,
+
+	/**
+	 * Read of multiple integer registers by a batch request.
+	 */
+	INTEGER_BATCH_READ,
+
+	/**
+	 * Write to multiple integer registers by a batch request.
+	 */
+	INTEGER_BATCH_WRITE,
+
+	/**
+	 * Retrieval of a change hint.
+	 */
+	CHANGE_HINT
+}
@@ -0,0 +1,132 @@
+package com.gboxsw.acpmod.registry;
+
+import java.util.Arrays;
+
+/**
+ * Estimator of round-trip time of requests and of a timeout derived from
+ * observed round-trip times. The estimator combines exponentially weighted
+ * moving average and variation of round-trip time with a high percentile of
+ * recent round-trip times. All methods are implemented as thread-safe.
+ */
+final class RoundTripTimeEstimator {
+
+	/**
+	 * Number of recent round-trip times used to compute the percentile.
+	 */
+	private static final int WINDOW_SIZE = 64;
+
+	/**
+	 * Minimal number of samples required to estimate a timeout.
+	 */
+	private static final int MIN_SAMPLES = 8;
+
+	/**
+	 * Weight of a new sample in the moving average of round-trip time.
+	 */
+	private static final double RTT_GAIN = 0.125;
+
+	/**
+	 * Weight of a new sample in the moving average of variation.
+	 */
+	private static final double VARIATION_GAIN = 0.25;
+
+	/**
+	 * Percentile of recent round-trip times used to estimate a timeout.
+	 */
+	private static final double PERCENTILE = 0.99;
+
+	/**
+	 * Multiplier of the percentile that provides a safety margin for slow
+	 * responses.
+	 */
+	private static final double PERCENTILE_MARGIN = 1.5;
+
+	/**
+	 * Smoothed round-trip time in milliseconds.
+	 */
+	private double smoothedRtt;
+
+	/**
+	 * Smoothed variation of round-trip time in milliseconds.
+	 */
+	private double rttVariation;
+
+	/**
+	 * Ring buffer with recent round-trip times.
+	 */
+	private final long[] recentRtts = new long[WINDOW_SIZE];
+
+	/**
+	 * Total number of samples.
+	 */
+	private long samples;
+
+	/**
+	 * Adds a round-trip time of completed request.
+	 * 
+	 * @param rtt
+	 *            the round-trip time in milliseconds.
+	 */
+	synchronized void addSample(long rtt) {
+		rtt = Math.max(rtt, 0);
+		if (samples == 0) {
+			smoothedRtt = rtt;
+			rttVariation = rtt / 2.0;
+		} else {
+			rttVariation += VARIATION_GAIN * (Math.abs(smoothedRtt - rtt) - rttVariation);
+			smoothedRtt += RTT_GAIN * (rtt - smoothedRtt);
+		}
+
+		recentRtts[(int) (samples % WINDOW_SIZE)] = rtt;
+		samples++;
+	}
+
+	/**
+	 * Returns the smoothed round-trip time.
+	 * 
+	 * @return the round-trip time in milliseconds or a negative value, if no
+	 *         round-trip time was observed.
+	 */
+	synchronized long getSmoothedRtt() {
+		if (samples == 0) {
+			return -1;
+		}
+
+		return Math.round(smoothedRtt);
+	}
+
+	/**
+	 * Returns the high percentile of recent round-trip times.
+	 * 
+	 * @return the round-trip time in milliseconds or a negative value, if no
+	 *         round-trip time was observed.
+	 */
+	synchronized long getRttPercentile() {
+		if (samples == 0) {
+			return -1;
+		}
+
+		long[] sorted = Arrays.copyOf(recentRtts, (int) Math.min(samples, WINDOW_SIZE));
+		Arrays.sort(sorted);
+		return sorted[(int) Math.ceil(PERCENTILE * sorted.length) - 1];
+	}
+
+	/**
+	 * Estimates timeout of a request.
+	 * 
+	 * @param minTimeout
+	 *            the minimal timeout in milliseconds.
+	 * @param maxTimeout
+	 *            the maximal timeout in milliseconds.
+	 * @return the timeout in milliseconds or a negative value, if there is not
+	 *         enough samples to estimate the timeout.
+	 */
+	synchronized long estimateTimeout(long minTimeout, long maxTimeout) {
+		if (samples < MIN_SAMPLES) {
+			return -1;
+		}
+
+		double timeout = Math.max(smoothedRtt + 4 * rttVariation, PERCENTILE_MARGIN * getRttPercentile());
+		return Math.max(minTimeout, Math.min(maxTimeout, (long) Math.ceil(timeout)));
+	}
+}
@@ -0,0 +1,1104 @@
+package com.gboxsw.acpmod.registry;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.*;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import com.gboxsw.acpmod.gep.GEPMessenger;
+import com.gboxsw.acpmod.gep.GEPMessenger.FullDuplexStreamSocket;
+import com.gboxsw.acpmod.gep.GEPMessenger.MessageListener;
+
+/**
+ * In-process simulator of a remote registry (device) accessible by GEP
+ * messages. The simulator is a socket that can be used to construct a
+ * {@link GepGateway}. The simulated registry processes read, write and change
+ * hint requests (including batch requests and requests for multiple change
+ * hints) with configurable latency, generates changes of registers,
+ * optionally sends change notices, and injects failures. Requests and
+ * responses that do not fit into a message are rejected. All methods are
+ * implemented as thread-safe.
+ */
+public class SimulatedRegistry implements FullDuplexStreamSocket {
+
+	/**
+	 * Code of request to read an integer register.
+	 */
+	private final static int READ_INT_REGISTRY_REQUEST = 0x01;
+
+	/**
+	 * Code of request to write an integer register.
+	 */
+	private final static int WRITE_INT_REGISTRY_REQUEST = 0x02;
+
+	/**
+	 * Code of request to read a binary register.
+	 */
+	private final static int READ_BIN_REGISTRY_REQUEST = 0x03;
+
+	/**
+	 * Code of request to write a binary register.
+	 */
+	private final static int WRITE_BIN_REGISTRY_REQUEST = 0x04;
+
+	/**
+	 * Code of request to retrieve a change hint.
+	 */
+	private final static int GET_CHANGE_HINT_REQUEST = 0x05;
+
+	/**
+	 * Code of request to read multiple integer registers.
+	 */
+	private final static int READ_INT_REGISTRIES_REQUEST = 0x06;
+
+	/**
+	 * Code of request to write multiple integer registers.
+	 */
+	private final static int WRITE_INT_REGISTRIES_REQUEST = 0x08;
+
+	/**
+	 * Code of request to retrieve multiple change hints.
+	 */
+	private final static int GET_CHANGE_HINTS_REQUEST = 0x09;
+
+	/**
+	 * Flag of change hints request asking for values of changed registers.
+	 */
+	private final static int CHANGE_HINTS_WITH_VALUES = 0x01;
+
+	/**
+	 * Code of message notifying that a register has been changed.
+	 */
+	private final static byte CHANGE_NOTICE_MESSAGE = 0x10;
+
+	/**
+	 * Code of response indicating that request failed.
+	 */
+	private final static byte REQUEST_FAILED_RESPONSE = 0x00;
+
+	/**
+	 * Code of response indicating that request was completed.
+	 */
+	private final static byte REQUEST_OK_RESPONSE = 0x01;
+
+	/**
+	 * Code of response indicating that write request failed due to unwritable
+	 * register.
+	 */
+	private final static byte UNWRITABLE_REGISTER_RESPONSE = 0x02;
+
+	/**
+	 * Maximal size of a message.
+	 */
+	private static final int MAX_MESSAGE_SIZE = 30;
+
+	/**
+	 * Capacity of buffers of simulated streams in bytes.
+	 */
+	private static final int STREAM_BUFFER_SIZE = 4096;
+
+	/**
+	 * Name of the thread that sends responses and generates changes.
+	 */
+	private static final String THREAD_NAME = "Simulated registry";
+
+	/**
+	 * Simulated register.
+	 */
+	private static final class SimulatedRegister {
+		/**
+		 * Value of an integer register.
+		 */
+		int intValue;
+
+		/**
+		 * Value of a binary register or null, if the register is an integer
+		 * register.
+		 */
+		byte[] binaryValue;
+
+		/**
+		 * Indicates whether the register rejects writes.
+		 */
+		boolean readOnly;
+	}
+
+	/**
+	 * In-memory unidirectional stream of bytes.
+	 */
+	private static final class Pipe {
+		/**
+		 * Circular buffer with bytes.
+		 */
+		private final byte[] buffer = new byte[STREAM_BUFFER_SIZE];
+
+		/**
+		 * Index of the first unread byte.
+		 */
+		private int readIndex;
+
+		/**
+		 * Number of unread bytes.
+		 */
+		private int available;
+
+		/**
+		 * Indicates whether the pipe is closed.
+		 */
+		private boolean closed;
+
+		/**
+		 * Reading end of the pipe.
+		 */
+		final InputStream inputStream = new InputStream() {
+			@Override
+			public int read() throws IOException {
+				byte[] data = new byte[1];
+				return (read(data, 0, 1) < 0) ? -1 : (data[0] & 0xFF);
+			}
+
+			@Override
+			public int read(byte[] b, int off, int len) throws IOException {
+				if (len == 0) {
+					return 0;
+				}
+
+				synchronized (Pipe.this) {
+					while ((available == 0) && (!closed)) {
+						try {
+							Pipe.this.wait();
+						} catch (InterruptedException e) {
+							throw new IOException("Read interrupted.", e);
+						}
+					}
+
+					if (available == 0) {
+						return -1;
+					}
+
+					int count = Math.min(len, available);
+					for (int i = 0; i < count; i++) {
+						b[off + i] = buffer[(readIndex + i) % buffer.length];
+					}
+					readIndex = (readIndex + count) % buffer.length;
+					available -= count;
+					Pipe.this.notifyAll();
+					return count;
+				}
+			}
+
+			@Override
+			public void close() {
+				Pipe.this.close();
+			}
+		};
+
+		/**
+		 * Writing end of the pipe.
+		 */
+		final OutputStream outputStream = new OutputStream() {
+			@Override
+			public void write(int b) throws IOException {
+				write(new byte[] { (byte) b }, 0, 1);
+			}
+
+			@Override
+			public void write(byte[] b, int off, int len) throws IOException {
+				synchronized (Pipe.this) {
+					for (int i = 0; i < len; i++) {
+						while ((available == buffer.length) && (!closed)) {
+							try {
+								Pipe.this.wait();
+							} catch (InterruptedException e) {
+								throw new IOException("Write interrupted.", e);
+							}
+						}
+
+						if (closed) {
+							throw new IOException("Stream closed.");
+						}
+
+						buffer[(readIndex + available) % buffer.length] = b[off + i];
+						available++;
+					}
+					Pipe.this.notifyAll();
+				}
+			}
+
+			@Override
+			public void close() {
+				Pipe.this.close();
+			}
+		};
+
+		/**
+		 * Closes the pipe.
+		 */
+		synchronized void close() {
+			closed = true;
+			notifyAll();
+		}
+	}
+
+	/**
+	 * Identifier of the registry (destination ID of GEP messages).
+	 */
+	private final int registryId;
+
+	/**
+	 * Simulated registers indexed by their identifiers.
+	 */
+	private final Map<Integer, SimulatedRegister> registers = new HashMap<>();
+
+	/**
+	 * Identifiers of registers whose value has been changed but not read.
+	 */
+	private final Set<Integer> changedRegisters = new LinkedHashSet<>();
+
+	/**
+	 * Source of random numbers.
+	 */
+	private final Random random = new Random();
+
+	/**
+	 * Minimal latency of responses in milliseconds.
+	 */
+	private long minLatency = 0;
+
+	/**
+	 * Maximal latency of responses in milliseconds.
+	 */
+	private long maxLatency = 0;
+
+	/**
+	 * Time in milliseconds between two generated changes of integer registers.
+	 * Zero or negative value mean that no changes are generated.
+	 */
+	private long changeInterval = 0;
+
+	/**
+	 * Probability that the registry replies that a request failed.
+	 */
+	private double failureProbability = 0;
+
+	/**
+	 * Probability that the registry does not reply to a request.
+	 */
+	private double dropProbability = 0;
+
+	/**
+	 * Indicates whether the registry does not reply to any request.
+	 */
+	private boolean offline = false;
+
+	/**
+	 * Indicates whether the registry sends change notices when a register is
+	 * changed.
+	 */
+	private boolean changeNotices = false;
+
+	/**
+	 * Number of received requests.
+	 */
+	private long receivedRequests = 0;
+
+	/**
+	 * Number of sent responses.
+	 */
+	private long sentResponses = 0;
+
+	/**
+	 * Stream of bytes sent by the gateway to the registry.
+	 */
+	private Pipe requestPipe;
+
+	/**
+	 * Stream of bytes sent by the registry to the gateway.
+	 */
+	private Pipe responsePipe;
+
+	/**
+	 * Messenger of the simulated registry.
+	 */
+	private GEPMessenger messenger;
+
+	/**
+	 * Executor that sends delayed responses and generates changes.
+	 */
+	private ScheduledExecutorService executor;
+
+	/**
+	 * Synchronization lock.
+	 */
+	private final Object lock = new Object();
+
+	/**
+	 * Constructs the simulated registry.
+	 * 
+	 * @param registryId
+	 *            the identifier of the registry (destination ID of GEP
+	 *            messages). Allowed values are between 1 and 15.
+	 */
+	public SimulatedRegistry(int registryId) {
+		if ((registryId < 1) || (registryId > 15)) {
+			throw new IllegalArgumentException("Invalid registry identifier (allowed: 1-15)");
+		}
+
+		this.registryId = registryId;
+	}
+
+	/**
+	 * Returns the identifier of the registry.
+	 * 
+	 * @return the identifier of the registry (destination ID of GEP messages).
+	 */
+	public int getRegistryId() {
+		return registryId;
+	}
+
+	/**
+	 * Sets value of an integer register. If the register does not exist, it is
+	 * created. If the value is changed, the register is marked as changed and
+	 * unread.
+	 * 
+	 * @param registerId
+	 *            the identifier of the register.
+	 * @param value
+	 *            the value.
+	 */
+	public void setIntegerRegister(int registerId, int value) {
+		checkRegisterId(registerId);
+		synchronized (lock) {
+			SimulatedRegister register = registers.get(registerId);
+			if ((register == null) || (register.binaryValue != null)) {
+				register = new SimulatedRegister();
+				registers.put(registerId, register);
+			} else if (register.intValue == value) {
+				return;
+			}
+
+			register.intValue = value;
+			changedRegisters.add(registerId);
+			sendChangeNotice(registerId);
+		}
+	}
+
+	/**
+	 * Returns value of an integer register.
+	 * 
+	 * @param registerId
+	 *            the identifier of the register.
+	 * @return the value.
+	 */
+	public int getIntegerRegister(int registerId) {
+		synchronized (lock) {
+			SimulatedRegister register = registers.get(registerId);
+			if ((register == null) || (register.binaryValue != null)) {
+				throw new NoSuchElementException("Integer register " + registerId + " does not exist.");
+			}
+
+			return register.intValue;
+		}
+	}
+
+	/**
+	 * Sets value of a binary register. If the register does not exist, it is
+	 * created. If the value is changed, the register is marked as changed and
+	 * unread.
+	 * 
+	 * @param registerId
+	 *            the identifier of the register.
+	 * @param value
+	 *            the value.
+	 */
+	public void setBinaryRegister(int registerId, byte[] value) {
+		checkRegisterId(registerId);
+		if (value == null) {
+			throw new NullPointerException("Value of binary register cannot be null.");
+		}
+
+		synchronized (lock) {
+			SimulatedRegister register = registers.get(registerId);
+			if ((register == null) || (register.binaryValue == null)) {
+				register = new SimulatedRegister();
+				registers.put(registerId, register);
+			} else if (Arrays.equals(register.binaryValue, value)) {
+				return;
+			}
+
+			register.binaryValue = value.clone();
+			changedRegisters.add(registerId);
+			sendChangeNotice(registerId);
+		}
+	}
+
+	/**
+	 * Returns value of a binary register.
+	 * 
+	 * @param registerId
+	 *            the identifier of the register.
+	 * @return the value.
+	 */
+	public byte[] getBinaryRegister(int registerId) {
+		synchronized (lock) {
+			SimulatedRegister register = registers.get(registerId);
+			if ((register == null) || (register.binaryValue == null)) {
+				throw new NoSuchElementException("Binary register " + registerId + " does not exist.");
+			}
+
+			return register.binaryValue.clone();
+		}
+	}
+
+	/**
+	 * Sets whether a register rejects writes.
+	 * 
+	 * @param registerId
+	 *            the identifier of the register.
+	 * @param readOnly
+	 *            true, if the register rejects writes, false otherwise.
+	 */
+	public void setReadOnly(int registerId, boolean readOnly) {
+		synchronized (lock) {
+			SimulatedRegister register = registers.get(registerId);
+			if (register == null) {
+				throw new NoSuchElementException("Register " + registerId + " does not exist.");
+			}
+
+			register.readOnly = readOnly;
+		}
+	}
+
+	/**
+	 * Removes a register.
+	 * 
+	 * @param registerId
+	 *            the identifier of the register.
+	 */
+	public void removeRegister(int registerId) {
+		synchronized (lock) {
+			registers.remove(registerId);
+			changedRegisters.remove(registerId);
+		}
+	}
+
+	/**
+	 * Sets the latency of responses. The latency of each response is chosen
+	 * uniformly at random from the given range.
+	 * 
+	 * @param minLatency
+	 *            the minimal latency in milliseconds.
+	 * @param maxLatency
+	 *            the maximal latency in milliseconds.
+	 */
+	public void setLatency(long minLatency, long maxLatency) {
+		if ((minLatency < 0) || (maxLatency < minLatency)) {
+			throw new IllegalArgumentException("Invalid range of latency.");
+		}
+
+		synchronized (lock) {
+			this.minLatency = minLatency;
+			this.maxLatency = maxLatency;
+		}
+	}
+
+	/**
+	 * Sets the time between two generated changes. Each change increments
+	 * value of a randomly chosen integer register and marks the register as
+	 * changed and unread.
+	 * 
+	 * @param changeInterval
+	 *            the time in milliseconds, zero or negative value to disable
+	 *            generating of changes.
+	 */
+	public void setChangeInterval(long changeInterval) {
+		synchronized (lock) {
+			this.changeInterval = changeInterval;
+			if ((executor != null) && (changeInterval > 0)) {
+				scheduleChange();
+			}
+		}
+	}
+
+	/**
+	 * Sets the probability that the registry replies that a request failed.
+	 * 
+	 * @param failureProbability
+	 *            the probability between 0 and 1.
+	 */
+	public void setFailureProbability(double failureProbability) {
+		checkProbability(failureProbability);
+		synchronized (lock) {
+			this.failureProbability = failureProbability;
+		}
+	}
+
+	/**
+	 * Sets the probability that the registry does not reply to a request.
+	 * 
+	 * @param dropProbability
+	 *            the probability between 0 and 1.
+	 */
+	public void setDropProbability(double dropProbability) {
+		checkProbability(dropProbability);
+		synchronized (lock) {
+			this.dropProbability = dropProbability;
+		}
+	}
+
+	/**
+	 * Sets whether the registry is offline, i.e., it does not reply to any
+	 * request.
+	 * 
+	 * @param offline
+	 *            true, if the registry is offline, false otherwise.
+	 */
+	public void setOffline(boolean offline) {
+		synchronized (lock) {
+			this.offline = offline;
+		}
+	}
+
+	/**
+	 * Sets whether the registry sends a change notice (an unsolicited message)
+	 * when a register is changed.
+	 * 
+	 * @param changeNotices
+	 *            true, if change notices are sent, false otherwise.
+	 */
+	public void setChangeNotices(boolean changeNotices) {
+		synchronized (lock) {
+			this.changeNotices = changeNotices;
+		}
+	}
+
+	/**
+	 * Sets the seed of random numbers in order to make simulations
+	 * repeatable.
+	 * 
+	 * @param seed
+	 *            the seed.
+	 */
+	public void setSeed(long seed) {
+		synchronized (lock) {
+			random.setSeed(seed);
+		}
+	}
+
+	/**
+	 * Returns the number of received requests.
+	 * 
+	 * @return the number of requests.
+	 */
+	public long getReceivedRequests() {
+		synchronized (lock) {
+			return receivedRequests;
+		}
+	}
+
+	/**
+	 * Returns the number of sent responses.
+	 * 
+	 * @return the number of responses.
+	 */
+	public long getSentResponses() {
+		synchronized (lock) {
+			return sentResponses;
+		}
+	}
+
+	@Override
+	public void open() {
+		synchronized (lock) {
+			if (messenger != null) {
+				return;
+			}
+
+			requestPipe = new Pipe();
+			responsePipe = new Pipe();
+			executor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, THREAD_NAME);
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+
+			final Pipe requests = requestPipe;
+			final Pipe responses = responsePipe;
+			messenger = new GEPMessenger(new FullDuplexStreamSocket() {
+				@Override
+				public void open() {
+					// streams are already open
+				}
+
+				@Override
+				public InputStream getInputStream() {
+					return requests.inputStream;
+				}
+
+				@Override
+				public OutputStream getOutputStream() {
+					return responses.outputStream;
+				}
+
+				@Override
+				public void close() {
+					requests.close();
+					responses.close();
+				}
+			}, registryId, MAX_MESSAGE_SIZE, new MessageListener() {
+				@Override
+				public void onMessageReceived(int tag, byte[] message) {
+					handleRequest(tag, message);
+				}
+			});
+			messenger.setDaemon(true);
+
+			try {
+				messenger.start(true);
+			} catch (Exception e) {
+				throw new RuntimeException("Start of simulated registry failed.", e);
+			}
+
+			if (changeInterval > 0) {
+				scheduleChange();
+			}
+		}
+	}
+
+	@Override
+	public InputStream getInputStream() {
+		synchronized (lock) {
+			if (responsePipe == null) {
+				throw new IllegalStateException("Socket is not open.");
+			}
+
+			return responsePipe.inputStream;
+		}
+	}
+
+	@Override
+	public OutputStream getOutputStream() {
+		synchronized (lock) {
+			if (requestPipe == null) {
+				throw new IllegalStateException("Socket is not open.");
+			}
+
+			return requestPipe.outputStream;
+		}
+	}
+
+	@Override
+	public void close() {
+		GEPMessenger messengerToStop;
+		synchronized (lock) {
+			if (messenger == null) {
+				return;
+			}
+
+			messengerToStop = messenger;
+			messenger = null;
+			executor.shutdownNow();
+			executor = null;
+			requestPipe.close();
+			responsePipe.close();
+		}
+
+		try {
+			messengerToStop.stop(false);
+		} catch (Exception ignore) {
+			// the messenger is stopped when streams are closed
+		}
+	}
+
+	/**
+	 * Handles a received request and schedules the response.
+	 * 
+	 * @param tag
+	 *            the tag of the request.
+	 * @param request
+	 *            the request.
+	 */
+	private void handleRequest(final int tag, byte[] request) {
+		synchronized (lock) {
+			receivedRequests++;
+			if (offline || (random.nextDouble() < dropProbability) || (executor == null)) {
+				return;
+			}
+
+			final byte[] response;
+			if (request.length > MAX_MESSAGE_SIZE) {
+				response = new byte[] { REQUEST_FAILED_RESPONSE };
+			} else if (random.nextDouble() < failureProbability) {
+				response = new byte[] { REQUEST_FAILED_RESPONSE };
+			} else {
+				response = processRequest(request);
+			}
+
+			final GEPMessenger responseMessenger = messenger;
+			long latency = minLatency + (long) (random.nextDouble() * (maxLatency - minLatency));
+			executor.schedule(new Runnable() {
+				@Override
+				public void run() {
+					if (responseMessenger.sendMessage(registryId, response, tag)) {
+						synchronized (lock) {
+							sentResponses++;
+						}
+					}
+				}
+			}, latency, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * Processes a request and creates the response. This method must be
+	 * invoked from thread holding the lock.
+	 * 
+	 * @param request
+	 *            the request.
+	 * @return the response.
+	 */
+	private byte[] processRequest(byte[] request) {
+		try {
+			int requestCode = request[0] & 0xFF;
+			if ((requestCode == GET_CHANGE_HINT_REQUEST) && (request.length == 1)) {
+				return createChangeHintResponse();
+			}
+
+			if (requestCode == GET_CHANGE_HINTS_REQUEST) {
+				return createChangeHintsResponse(request);
+			}
+
+			if (requestCode == READ_INT_REGISTRIES_REQUEST) {
+				return createBatchReadResponse(request);
+			}
+
+			if (requestCode == WRITE_INT_REGISTRIES_REQUEST) {
+				return processBatchWrite(request);
+			}
+
+			int registerId = decodeRegisterId(request, 1);
+			int payloadOffset = (registerId < 128) ? 2 : 3;
+			if (requestCode == GET_CHANGE_HINT_REQUEST) {
+				changedRegisters.remove(registerId);
+				return createChangeHintResponse();
+			}
+
+			SimulatedRegister register = registers.get(registerId);
+			if (register == null) {
+				return new byte[] { REQUEST_FAILED_RESPONSE };
+			}
+
+			boolean binaryRegister = (register.binaryValue != null);
+			switch (requestCode) {
+			case READ_INT_REGISTRY_REQUEST:
+				if (binaryRegister) {
+					break;
+				}
+
+				changedRegisters.remove(registerId);
+				return createResponse(GepGateway.encodeNumber(register.intValue));
+			case READ_BIN_REGISTRY_REQUEST:
+				if (!binaryRegister) {
+					break;
+				}
+
+				changedRegisters.remove(registerId);
+				return createResponse(register.binaryValue);
+			case WRITE_INT_REGISTRY_REQUEST:
+				if (binaryRegister) {
+					break;
+				}
+
+				if (register.readOnly) {
+					return new byte[] { UNWRITABLE_REGISTER_RESPONSE };
+				}
+
+				register.intValue = GepGateway.decodeNumber(request, payloadOffset);
+				return new byte[] { REQUEST_OK_RESPONSE };
+			case WRITE_BIN_REGISTRY_REQUEST:
+				if (!binaryRegister) {
+					break;
+				}
+
+				if (register.readOnly) {
+					return new byte[] { UNWRITABLE_REGISTER_RESPONSE };
+				}
+
+				register.binaryValue = Arrays.copyOfRange(request, payloadOffset, request.length);
+				return new byte[] { REQUEST_OK_RESPONSE };
+			}
+		} catch (Exception ignore) {
+			// malformed request is rejected
+		}
+
+		return new byte[] { REQUEST_FAILED_RESPONSE };
+	}
+
+	/**
+	 * Creates response to a request for reading multiple integer registers.
+	 * Registers are marked as read only if the response fits into a message.
+	 * This method must be invoked from thread holding the lock.
+	 * 
+	 * @param request
+	 *            the request.
+	 * @return the response.
+	 */
+	private byte[] createBatchReadResponse(byte[] request) {
+		ByteArrayOutputStream payload = new ByteArrayOutputStream();
+		List<Integer> readRegisters = new ArrayList<>();
+		int offset = 1;
+		while (offset < request.length) {
+			int registerId = decodeRegisterId(request, offset);
+			offset += (registerId < 128) ? 1 : 2;
+
+			SimulatedRegister register = registers.get(registerId);
+			if ((register == null) || (register.binaryValue != null)) {
+				return new byte[] { REQUEST_FAILED_RESPONSE };
+			}
+
+			byte[] value = GepGateway.encodeNumber(register.intValue);
+			payload.write(value, 0, value.length);
+			readRegisters.add(registerId);
+		}
+
+		if (1 + payload.size() > MAX_MESSAGE_SIZE) {
+			return new byte[] { REQUEST_FAILED_RESPONSE };
+		}
+
+		changedRegisters.removeAll(readRegisters);
+		return createResponse(payload.toByteArray());
+	}
+
+	/**
+	 * Processes a request for writing multiple integer registers. Values are
+	 * written only if all registers are writable integer registers. This
+	 * method must be invoked from thread holding the lock.
+	 * 
+	 * @param request
+	 *            the request.
+	 * @return the response.
+	 */
+	private byte[] processBatchWrite(byte[] request) {
+		Map<SimulatedRegister, Integer> writes = new LinkedHashMap<>();
+		boolean unwritable = false;
+		int offset = 1;
+		while (offset < request.length) {
+			int registerId = decodeRegisterId(request, offset);
+			offset += (registerId < 128) ? 1 : 2;
+			int value = GepGateway.decodeNumber(request, offset);
+			offset += GepGateway.encodeNumber(value).length;
+
+			SimulatedRegister register = registers.get(registerId);
+			if ((register == null) || (register.binaryValue != null)) {
+				return new byte[] { REQUEST_FAILED_RESPONSE };
+			}
+
+			unwritable |= register.readOnly;
+			writes.put(register, value);
+		}
+
+		if (unwritable) {
+			return new byte[] { UNWRITABLE_REGISTER_RESPONSE };
+		}
+
+		for (Map.Entry<SimulatedRegister, Integer> write : writes.entrySet()) {
+			write.getKey().intValue = write.getValue();
+		}
+
+		return new byte[] { REQUEST_OK_RESPONSE };
+	}
+
+	/**
+	 * Creates response to a change hint request. This method must be invoked
+	 * from thread holding the lock.
+	 * 
+	 * @return the response.
+	 */
+	private byte[] createChangeHintResponse() {
+		Iterator<Integer> it = changedRegisters.iterator();
+		return createResponse(GepGateway.encodeNumber(it.hasNext() ? it.next() : -1));
+	}
+
+	/**
+	 * Creates response to a request for multiple change hints. Registers
+	 * confirmed by the request are marked as read. The response contains as
+	 * many hints as fit into a message. This method must be invoked from
+	 * thread holding the lock.
+	 * 
+	 * @param request
+	 *            the request.
+	 * @return the response.
+	 */
+	private byte[] createChangeHintsResponse(byte[] request) {
+		int maxHints = request[1] & 0xFF;
+		boolean withValues = (request[2] & CHANGE_HINTS_WITH_VALUES) != 0;
+		int offset = 3;
+		while (offset < request.length) {
+			int registerId = decodeRegisterId(request, offset);
+			changedRegisters.remove(registerId);
+			offset += (registerId < 128) ? 1 : 2;
+		}
+
+		ByteArrayOutputStream payload = new ByteArrayOutputStream();
+		List<Integer> hintedRegisters = new ArrayList<>();
+		for (int registerId : changedRegisters) {
+			if (hintedRegisters.size() >= maxHints) {
+				break;
+			}
+
+			ByteArrayOutputStream hint = new ByteArrayOutputStream();
+			byte[] encodedId = GepGateway.encodeNumber(registerId);
+			hint.write(encodedId, 0, encodedId.length);
+			if (withValues) {
+				SimulatedRegister register = registers.get(registerId);
+				byte[] value = (register.binaryValue != null) ? register.binaryValue
+						: GepGateway.encodeNumber(register.intValue);
+				byte[] length = GepGateway.encodeNumber(value.length);
+				hint.write(length, 0, length.length);
+				hint.write(value, 0, value.length);
+			}
+
+			if (1 + payload.size() + hint.size() > MAX_MESSAGE_SIZE) {
+				break;
+			}
+
+			byte[] encodedHint = hint.toByteArray();
+			payload.write(encodedHint, 0, encodedHint.length);
+			hintedRegisters.add(registerId);
+		}
+
+		// registers with values in the response are marked as read
+		if (withValues) {
+			changedRegisters.removeAll(hintedRegisters);
+		}
+
+		return createResponse(payload.toByteArray());
+	}
+
+	/**
+	 * Schedules the next generated change. This method must be invoked from
+	 * thread holding the lock.
+	 */
+	private void scheduleChange() {
+		final ScheduledExecutorService changeExecutor = executor;
+		changeExecutor.schedule(new Runnable() {
+			@Override
+			public void run() {
+				synchronized (lock) {
+					if ((executor != changeExecutor) || (changeInterval <= 0)) {
+						return;
+					}
+
+					List<Integer> integerRegisterIds = new ArrayList<>();
+					for (Map.Entry<Integer, SimulatedRegister> entry : registers.entrySet()) {
+						if (entry.getValue().binaryValue == null) {
+							integerRegisterIds.add(entry.getKey());
+						}
+					}
+
+					if (!integerRegisterIds.isEmpty()) {
+						int registerId = integerRegisterIds.get(random.nextInt(integerRegisterIds.size()));
+						registers.get(registerId).intValue++;
+						changedRegisters.add(registerId);
+						sendChangeNotice(registerId);
+					}
+
+					scheduleChange();
+				}
+			}
+		}, changeInterval, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Schedules sending of a change notice, if change notices are enabled.
+	 * This method must be invoked from thread holding the lock.
+	 * 
+	 * @param registerId
+	 *            the identifier of the changed register.
+	 */
+	private void sendChangeNotice(int registerId) {
+		if (!changeNotices || offline || (executor == null)) {
+			return;
+		}
+
+		final byte[] notice;
+		if (registerId < 128) {
+			notice = new byte[] { CHANGE_NOTICE_MESSAGE, (byte) registryId, (byte) registerId };
+		} else {
+			notice = new byte[] { CHANGE_NOTICE_MESSAGE, (byte) registryId, (byte) ((registerId / 256) | 0x80),
+					(byte) (registerId % 256) };
+		}
+
+		final GEPMessenger noticeMessenger = messenger;
+		executor.schedule(new Runnable() {
+			@Override
+			public void run() {
+				noticeMessenger.sendMessage(registryId, notice, GepGateway.CHANGE_NOTICE_TAG);
+			}
+		}, minLatency, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Creates a response reporting completed request with given payload.
+	 * 
+	 * @param payload
+	 *            the payload.
+	 * @return the response.
+	 */
+	private static byte[] createResponse(byte[] payload) {
+		byte[] response = new byte[payload.length + 1];
+		response[0] = REQUEST_OK_RESPONSE;
+		System.arraycopy(payload, 0, response, 1, payload.length);
+		return response;
+	}
+
+	/**
+	 * Decodes identifier of a register.
+	 * 
+	 * @param data
+	 *            the array of bytes.
+	 * @param offset
+	 *            the offset in data array where encoded identifier starts.
+	 * @return the identifier of register.
+	 */
+	private static int decodeRegisterId(byte[] data, int offset) {
+		int aByte = data[offset] & 0xFF;
+		if ((aByte & 0x80) == 0) {
+			return aByte;
+		}
+
+		return (aByte & 0x7F) * 256 + (data[offset + 1] & 0xFF);
+	}
+
+	/**
+	 * Throws an exception, if the register identifier is not valid.
+	 * 
+	 * @param registerId
+	 *            the identifier of a register.
+	 */
+	private static void checkRegisterId(int registerId) {
+		if ((registerId < 0) || (registerId >= 128 * 256)) {
+			throw new IllegalArgumentException("Identifier of register (" + registerId + ") is not valid.");
+		}
+	}
+
+	/**
+	 * Throws an exception, if the probability is not valid.
+	 * 
+	 * @param probability
+	 *            the probability.
+	 */
+	private static void checkProbability(double probability) {
+		if ((probability < 0) || (probability > 1)) {
+			throw new IllegalArgumentException("Probability must be between 0 and 1.");
+		}
+	}
+}
@@ -0,0 +1,1606 @@
+package com.gboxsw.acpmod.registry;
+
+import java.lang.ref.WeakReference;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Scheduler that updates registers managed by one or more updaters. Each
+ * register is scheduled once regardless of the number of updaters managing it
+ * (subscriptions are reference-counted). The scheduler runs a single
+ * scheduling thread and executes requests in its own bounded pool of worker
+ * threads, hence schedulers do not delay each other. Registers of a gateway
+ * are updated by a single worker that blocks while waiting for responses, so
+ * if more gateways than {@link #MAX_WORKER_THREADS} are slow at the same
+ * time, updates of remaining gateways of the scheduler wait until a worker
+ * thread is available. Settings of the scheduler apply to all registers
+ * of all updaters using the scheduler. Registers are polled according to their
+ * update intervals and hints, change notices sent by registries trigger
+ * immediate updates of notified registers.
+ * 
+ * @see AutoUpdater#AutoUpdater(UpdateScheduler)
+ */
+public final class UpdateScheduler {
+
+	/**
+	 * Name of the update thread.
+	 */
+	private static final String THREAD_NAME = "Registry auto-update";
+
+	/**
+	 * Name of threads updating registers.
+	 */
+	private static final String WORKER_THREAD_NAME = "Registry auto-update worker";
+
+	/**
+	 * State record related to registers of a register collection.
+	 */
+	private static class CollectionState {
+		/**
+		 * Collection of registers whose state is recorded.
+		 */
+		final WeakReference<RegisterCollection> registerCollection;
+
+		/**
+		 * Time of last reading of a register hint.
+		 */
+		long lastHintTime;
+
+		/**
+		 * Configuration of method for retrieving update hints or null, if use
+		 * of hints is disabled. If multiple updaters use hints, the settings
+		 * with the shortest interval are applied.
+		 */
+		AutoUpdater.HintSettings hintSettings;
+
+		/**
+		 * Hint settings of updaters using hints.
+		 */
+		final WeakHashMap<Object, AutoUpdater.HintSettings> hintSubscriptions = new WeakHashMap<>();
+
+		/**
+		 * Identifiers of registers that were notified as changed but are not
+		 * managed (updated) by this scheduler.
+		 */
+		final List<Integer> unconfirmedRegisterIds = new ArrayList<>();
+
+		/**
+		 * Managed registers of the collection indexed by identifiers of
+		 * registers. Lists of registers are never empty.
+		 */
+		final Map<Integer, List<Register>> registers = new HashMap<>();
+
+		/**
+		 * Scheduled hint request or null, if no hint request is scheduled.
+		 */
+		ScheduledUpdate scheduledHint;
+
+		/**
+		 * Budget of requests to the collection or null, if the number of
+		 * requests is not limited.
+		 */
+		RateLimit rateLimit;
+
+		/**
+		 * Constructs data structure for managing registry hints.
+		 * 
+		 * @param collection
+		 *            the register collection.
+		 */
+		public CollectionState(RegisterCollection collection) {
+			this.registerCollection = new WeakReference<RegisterCollection>(collection);
+			lastHintTime = MonotonicClock.INSTANCE.currentTimeMillis();
+		}
+
+		/**
+		 * Updates applied hint settings according to hint settings of
+		 * updaters.
+		 */
+		void updateHintSettings() {
+			hintSettings = null;
+			for (AutoUpdater.HintSettings settings : hintSubscriptions.values()) {
+				if ((hintSettings == null) || (settings.getInterval() < hintSettings.getInterval())) {
+					hintSettings = settings;
+				}
+			}
+		}
+
+		/**
+		 * Adds a managed register.
+		 * 
+		 * @param register
+		 *            the register.
+		 */
+		void addRegister(Register register) {
+			List<Register> registersWithId = registers.get(register.getRegisterId());
+			if (registersWithId == null) {
+				registersWithId = new ArrayList<>(1);
+				registers.put(register.getRegisterId(), registersWithId);
+			}
+			registersWithId.add(register);
+		}
+
+		/**
+		 * Removes a managed register.
+		 * 
+		 * @param register
+		 *            the register.
+		 */
+		void removeRegister(Register register) {
+			List<Register> registersWithId = registers.get(register.getRegisterId());
+			if (registersWithId != null) {
+				registersWithId.remove(register);
+				if (registersWithId.isEmpty()) {
+					registers.remove(register.getRegisterId());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Scheduled update of a register or scheduled hint request of a register
+	 * collection. A scheduled update is valid only while it is the current
+	 * scheduled update of the register or the collection, otherwise it is
+	 * ignored when it expires.
+	 */
+	private static final class ScheduledUpdate implements Comparable<ScheduledUpdate> {
+		/**
+		 * The register to be updated or null, if the update is a hint request.
+		 */
+		final Register register;
+
+		/**
+		 * The collection state whose hint is requested or null, if the update
+		 * is an update of a register.
+		 */
+		final CollectionState collectionState;
+
+		/**
+		 * Monotonic time in milliseconds when the update expires.
+		 */
+		final long deadline;
+
+		/**
+		 * Indicates whether the register is updated when the update expires
+		 * regardless of its update interval, e.g., a notified register
+		 * deferred due to rate limits.
+		 */
+		final boolean forced;
+
+		/**
+		 * Constructs scheduled update.
+		 * 
+		 * @param register
+		 *            the register to be updated.
+		 * @param collectionState
+		 *            the collection state whose hint is requested.
+		 * @param deadline
+		 *            the time when the update expires.
+		 */
+		ScheduledUpdate(Register register, CollectionState collectionState, long deadline) {
+			this(register, collectionState, deadline, false);
+		}
+
+		/**
+		 * Constructs scheduled update.
+		 * 
+		 * @param register
+		 *            the register to be updated.
+		 * @param collectionState
+		 *            the collection state whose hint is requested.
+		 * @param deadline
+		 *            the time when the update expires.
+		 * @param forced
+		 *            true, if the register is updated regardless of its update
+		 *            interval, false otherwise.
+		 */
+		ScheduledUpdate(Register register, CollectionState collectionState, long deadline, boolean forced) {
+			this.register = register;
+			this.collectionState = collectionState;
+			this.deadline = deadline;
+			this.forced = forced;
+		}
+
+		@Override
+		public int compareTo(ScheduledUpdate other) {
+			return Long.compare(deadline, other.deadline);
+		}
+	}
+
+	/**
+	 * Worker that updates registers and executes hint requests of a single
+	 * gateway (or a single register collection, if virtual threads are used).
+	 * Updates handled by the same worker are serialized, updates handled by
+	 * different workers run in parallel. The worker terminates when there are
+	 * no pending updates.
+	 */
+	private final class UpdateWorker implements Runnable {
+		/**
+		 * The key identifying the worker, i.e., the gateway or the register
+		 * collection whose registers are updated.
+		 */
+		final Object key;
+
+		/**
+		 * Registers waiting for update.
+		 */
+		final List<Register> pendingRegisters = new ArrayList<>();
+
+		/**
+		 * Collection states waiting for a hint request.
+		 */
+		final List<CollectionState> pendingHints = new ArrayList<>();
+
+		/**
+		 * Constructs worker.
+		 * 
+		 * @param key
+		 *            the key identifying the worker.
+		 */
+		UpdateWorker(Object key) {
+			this.key = key;
+		}
+
+		@Override
+		public void run() {
+			final List<Register> registersToUpdate = new ArrayList<>();
+			final List<CollectionState> hintsToRequest = new ArrayList<>();
+			while (true) {
+				registersToUpdate.clear();
+				hintsToRequest.clear();
+				synchronized (lock) {
+					if (pendingRegisters.isEmpty() && pendingHints.isEmpty()) {
+						workers.remove(key);
+						return;
+					}
+
+					registersToUpdate.addAll(pendingRegisters);
+					hintsToRequest.addAll(pendingHints);
+					pendingRegisters.clear();
+					pendingHints.clear();
+				}
+
+				// record delays of updates of registers dispatched by the
+				// scheduler
+				final long now = MonotonicClock.INSTANCE.currentTimeMillis();
+				for (Register register : registersToUpdate) {
+					long dueTime = register.getDueTimeMillis();
+					if (dueTime != Long.MIN_VALUE) {
+						statistics.recordSchedulingLag(Math.max(0, now - dueTime));
+					}
+				}
+
+				final long requestStart = System.nanoTime();
+				try {
+					executeHintRequests(hintsToRequest, registersToUpdate);
+					updateRegisters(registersToUpdate);
+				} finally {
+					statistics.recordRequests(registersToUpdate.size(), System.nanoTime() - requestStart);
+					scheduleRegisters(registersToUpdate);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Maximal number of threads running update workers of a scheduler.
+	 */
+	public static final int MAX_WORKER_THREADS = Math.max(8, 2 * Runtime.getRuntime().availableProcessors());
+
+	/**
+	 * The scheduler shared by all updaters constructed with the shared
+	 * scheduler.
+	 */
+	private static final UpdateScheduler sharedInstance = new UpdateScheduler();
+
+	/**
+	 * Bounded pool of threads running update workers of the scheduler. If
+	 * all threads are busy, workers wait in a queue. Idle threads terminate,
+	 * hence an unused scheduler does not hold any worker thread.
+	 */
+	private final ThreadPoolExecutor workerPool;
+
+	/**
+	 * Internal synchronization lock.
+	 */
+	private final Object lock = new Object();
+
+	/**
+	 * Budgets of requests to gateways.
+	 */
+	private final WeakHashMap<Gateway, RateLimit> gatewayRateLimits = new WeakHashMap<>();
+
+	/**
+	 * Statistics of the scheduler.
+	 */
+	private final UpdaterStatistics statistics = new UpdaterStatistics();
+
+	/**
+	 * Active workers identified by their keys.
+	 */
+	private final Map<Object, UpdateWorker> workers = new HashMap<>();
+
+	/**
+	 * Executor running workers in virtual threads or null, if workers run in
+	 * the pool of platform threads.
+	 */
+	private ExecutorService virtualThreadExecutor;
+
+	/**
+	 * Indicates whether updates of added registers are spread over their
+	 * update intervals.
+	 */
+	private boolean phaseSpreading = true;
+
+	/**
+	 * Maximal random delay of scheduled updates as a fraction of update
+	 * interval.
+	 */
+	private double jitter = 0;
+
+	/**
+	 * Added registers whose update following the first update is scheduled at
+	 * their phase offset.
+	 */
+	private final Set<Register> phasedRegisters = new HashSet<>();
+
+	/**
+	 * Managed registers with their current scheduled updates. The scheduled
+	 * update of a register that is being updated is null.
+	 */
+	private final Map<Register, ScheduledUpdate> registers = new HashMap<>();
+
+	/**
+	 * Number of updaters managing each managed register.
+	 */
+	private final Map<Register, Integer> subscriptions = new HashMap<>();
+
+	/**
+	 * Heap of scheduled updates ordered by deadlines. The heap may contain
+	 * invalidated updates that are removed lazily.
+	 */
+	private final PriorityQueue<ScheduledUpdate> schedule = new PriorityQueue<>();
+
+	/**
+	 * Collection states with expired hint requests found while searching for
+	 * expired registers.
+	 */
+	private final List<CollectionState> expiredHints = new ArrayList<>();
+
+	/**
+	 * Map that assigns to each registry collection its state data.
+	 */
+	private final WeakHashMap<RegisterCollection, CollectionState> collectionStates = new WeakHashMap<>();
+
+	/**
+	 * Thread realizing periodical update of managed registers.
+	 */
+	private Thread updateThread;
+
+	/**
+	 * Listener of change notices subscribed to register collections with a
+	 * collection state.
+	 */
+	private final RegisterCollection.ChangeNoticeListener changeNoticeListener =
+			new RegisterCollection.ChangeNoticeListener() {
+				@Override
+				public void onChangeNotice(RegisterCollection registerCollection, int[] registerIds) {
+					handleChangeNotice(registerCollection, registerIds);
+				}
+			};
+
+	/**
+	 * Constructs a new scheduler.
+	 */
+	public UpdateScheduler() {
+		workerPool = new ThreadPoolExecutor(MAX_WORKER_THREADS, MAX_WORKER_THREADS, 60, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+					@Override
+					public Thread newThread(Runnable r) {
+						Thread thread = new Thread(r, WORKER_THREAD_NAME);
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+		workerPool.allowCoreThreadTimeOut(true);
+	}
+
+	/**
+	 * Returns the process-wide scheduler that can be shared by multiple
+	 * updaters. All updaters using the shared scheduler share its worker
+	 * threads, see {@link #MAX_WORKER_THREADS}.
+	 * 
+	 * @return the shared scheduler.
+	 */
+	public static UpdateScheduler getSharedInstance() {
+		return sharedInstance;
+	}
+
+	/**
+	 * The updating subroutine (loop). The loop only finds expired updates and
+	 * dispatches them to workers, hence slow gateways do not delay updates of
+	 * registers provided by other gateways.
+	 */
+	private void mainLoop() {
+		final Thread thisThread = Thread.currentThread();
+		final ArrayList<Register> expiredRegisters = new ArrayList<Register>();
+		final ArrayList<CollectionState> collectionsWithExpiredHints = new ArrayList<CollectionState>();
+
+		while (true) {
+			expiredRegisters.clear();
+			collectionsWithExpiredHints.clear();
+
+			synchronized (lock) {
+				// check whether the update thread is active
+				if (thisThread != updateThread) {
+					break;
+				}
+
+				// find registers and register collections with active hints
+				// that require update
+				final long iterationStart = System.nanoTime();
+				long nextUpdate = findExpiredRegisters(expiredRegisters);
+				collectionsWithExpiredHints.addAll(expiredHints);
+				expiredHints.clear();
+
+				// wait until the next deadline if there are no expired
+				// registers or pending hint requests (changes of schedule wake
+				// up the thread)
+				if (expiredRegisters.isEmpty() && collectionsWithExpiredHints.isEmpty()) {
+					statistics.recordLoopIteration(System.nanoTime() - iterationStart);
+					try {
+						lock.wait((nextUpdate == Long.MAX_VALUE) ? 0 : nextUpdate);
+					} catch (InterruptedException ignore) {
+						// ignored exception
+					}
+
+					continue;
+				}
+
+				dispatchUpdates(expiredRegisters, collectionsWithExpiredHints);
+				statistics.recordLoopIteration(System.nanoTime() - iterationStart);
+			}
+		}
+	}
+
+	/**
+	 * Dispatches expired updates to workers. A worker is started for each
+	 * gateway (or register collection, if virtual threads are used) that has
+	 * no active worker. This method must be invoked from thread holding the
+	 * lock.
+	 * 
+	 * @param expiredRegisters
+	 *            the registers that require update.
+	 * @param collectionsWithExpiredHints
+	 *            the collection states that require a hint request.
+	 */
+	private void dispatchUpdates(List<Register> expiredRegisters, List<CollectionState> collectionsWithExpiredHints) {
+		for (CollectionState cs : collectionsWithExpiredHints) {
+			getWorker(cs.registerCollection.get()).pendingHints.add(cs);
+		}
+
+		for (Register register : expiredRegisters) {
+			getWorker(register.getRegisterCollection()).pendingRegisters.add(register);
+		}
+	}
+
+	/**
+	 * Returns the active worker updating registers of a register collection.
+	 * If there is no active worker, a new worker is created and started. This
+	 * method must be invoked from thread holding the lock.
+	 * 
+	 * @param registerCollection
+	 *            the register collection.
+	 * @return the worker.
+	 */
+	private UpdateWorker getWorker(RegisterCollection registerCollection) {
+		Object key;
+		if ((virtualThreadExecutor != null) || (registerCollection == null)) {
+			key = registerCollection;
+		} else {
+			key = registerCollection.getGateway();
+		}
+
+		UpdateWorker worker = workers.get(key);
+		if (worker == null) {
+			worker = new UpdateWorker(key);
+			workers.put(key, worker);
+			if (virtualThreadExecutor != null) {
+				virtualThreadExecutor.execute(worker);
+			} else {
+				workerPool.execute(worker);
+			}
+		}
+
+		return worker;
+	}
+
+	/**
+	 * Executes hint requests and adds all managed registers with identifiers
+	 * retrieved in hints to the list of expired registers. Registers whose
+	 * values are retrieved in hints are updated immediately.
+	 * 
+	 * @param collectionsWithExpiredHints
+	 *            the collection states that require a hint request.
+	 * @param expiredRegisters
+	 *            the list of expired registers.
+	 */
+	private void executeHintRequests(List<CollectionState> collectionsWithExpiredHints,
+			List<Register> expiredRegisters) {
+		for (CollectionState cs : collectionsWithExpiredHints) {
+			// retrieve hint settings, ids of unconfirmed registers, and
+			// register collections
+			long operationTimeout;
+			int maxHints;
+			boolean hintValues;
+			int[] unconfirmedRegisterIds;
+			AutoUpdater.HintStrategy hintStrategy;
+
+			RegisterCollection registerCollection;
+			synchronized (lock) {
+				if (cs.hintSettings == null) {
+					continue;
+				}
+
+				operationTimeout = cs.hintSettings.getTimeout();
+				maxHints = cs.hintSettings.getMaxHints();
+				hintValues = cs.hintSettings.isHintValues();
+				registerCollection = cs.registerCollection.get();
+				hintStrategy = cs.hintSettings.getStrategy();
+				if (registerCollection == null) {
+					cs.hintSettings = null;
+					continue;
+				}
+
+				// a hint request confirms only registers that fit into the
+				// request, remaining registers are confirmed by next requests
+				unconfirmedRegisterIds = toArray(cs.unconfirmedRegisterIds);
+				int confirmations;
+				if ((maxHints == 1) && !hintValues) {
+					confirmations = Math.min(unconfirmedRegisterIds.length, 1);
+				} else {
+					confirmations = registerCollection.countConfirmableRegisters(unconfirmedRegisterIds);
+				}
+
+				unconfirmedRegisterIds = Arrays.copyOf(unconfirmedRegisterIds, confirmations);
+				cs.unconfirmedRegisterIds.subList(0, confirmations).clear();
+			}
+
+			// execute hint request
+			ChangeHint[] hints = new ChangeHint[0];
+			try {
+				if ((maxHints > 1) || hintValues) {
+					hints = registerCollection.getChangeHints(unconfirmedRegisterIds, maxHints, hintValues,
+							operationTimeout);
+				} else {
+					int hintId = registerCollection.getChangeHintId(
+							(unconfirmedRegisterIds.length > 0) ? unconfirmedRegisterIds[0] : -1, operationTimeout);
+					if (hintId >= 0) {
+						hints = new ChangeHint[] { new ChangeHint(hintId) };
+					}
+				}
+			} catch (Exception ignore) {
+				// in case of failure, hint request is skipped
+			}
+
+			// update timestamp of the last hint update and add all registers
+			// with retrieved register ids to expired registers
+			List<Register> registersWithValues = new ArrayList<>();
+			List<ChangeHint> valuesOfRegisters = new ArrayList<>();
+			synchronized (lock) {
+				boolean hintForManagedRegister = false;
+				for (ChangeHint hint : hints) {
+					List<Register> registersWithId = cs.registers.get(hint.getRegisterId());
+					if (registersWithId == null) {
+						// registers with retrieved values are already marked
+						// as read
+						if (!hint.hasValue() && !cs.unconfirmedRegisterIds.contains(hint.getRegisterId())) {
+							cs.unconfirmedRegisterIds.add(hint.getRegisterId());
+						}
+						continue;
+					}
+
+					hintForManagedRegister = true;
+					for (Register register : registersWithId) {
+						// registers without scheduled update are already
+						// being updated
+						if (registers.get(register) == null) {
+							continue;
+						}
+
+						boolean valueRetrieved = register.isBinaryMode() ? (hint.getBinaryValue() != null)
+								: (hint.getIntegerValue() != null);
+						if (valueRetrieved) {
+							registers.put(register, null);
+							registersWithValues.add(register);
+							valuesOfRegisters.add(hint);
+						} else {
+							// registers exceeding the request budget are
+							// deferred until a permit is available
+							long millisToPermit = acquirePermit(registerCollection);
+							if (millisToPermit > 0) {
+								scheduleUpdate(register, MonotonicClock.INSTANCE.currentTimeMillis() + millisToPermit,
+										true);
+							} else {
+								registers.put(register, null);
+								expiredRegisters.add(register);
+							}
+						}
+					}
+				}
+
+				// set time of last hint with respect to utilized strategy (if
+				// time is not updated, new hint request is scheduled
+				// immediately)
+				if (hintStrategy == AutoUpdater.HintStrategy.SIMPLE) {
+					cs.lastHintTime = MonotonicClock.INSTANCE.currentTimeMillis();
+				} else if (hintStrategy == AutoUpdater.HintStrategy.SEMI_GREEDY) {
+					if (!hintForManagedRegister) {
+						cs.lastHintTime = MonotonicClock.INSTANCE.currentTimeMillis();
+					}
+				} else if (hintStrategy == AutoUpdater.HintStrategy.GREEDY) {
+					if (hints.length == 0) {
+						cs.lastHintTime = MonotonicClock.INSTANCE.currentTimeMillis();
+					}
+				}
+
+				scheduleHint(cs);
+				lock.notifyAll();
+			}
+
+			// apply values retrieved in hints
+			if (!registersWithValues.isEmpty()) {
+				for (int i = 0; i < registersWithValues.size(); i++) {
+					Register register = registersWithValues.get(i);
+					ChangeHint hint = valuesOfRegisters.get(i);
+					if (register.isBinaryMode()) {
+						register.updateValue(hint.getBinaryValue());
+					} else {
+						register.updateValue(hint.getIntegerValue());
+					}
+				}
+
+				scheduleRegisters(registersWithValues);
+			}
+		}
+	}
+
+	/**
+	 * Removes expired updates from the schedule. Registers whose update
+	 * expired are added to the list of expired registers and their scheduled
+	 * update is cleared until they are scheduled again. Collection states whose
+	 * hint request expired are added to the list of expired hints. The cost of
+	 * the method is proportional to the number of expired updates.
+	 * 
+	 * @param expiredRegisters
+	 *            the list to which the registers that require update are
+	 *            added.
+	 * @return the time in milliseconds until the next scheduled update or
+	 *         {@link Long#MAX_VALUE}, if there is no scheduled update.
+	 */
+	long findExpiredRegisters(List<Register> expiredRegisters) {
+		synchronized (lock) {
+			final long now = MonotonicClock.INSTANCE.currentTimeMillis();
+			while (!schedule.isEmpty()) {
+				ScheduledUpdate update = schedule.peek();
+				if (isValid(update) && (update.deadline > now)) {
+					return update.deadline - now;
+				}
+
+				schedule.poll();
+				if (!isValid(update)) {
+					continue;
+				}
+
+				if (update.register != null) {
+					// the register can expire before its scheduled deadline,
+					// e.g., if reading of its value failed, or later, if it
+					// was updated by another request (forced updates expire
+					// at their deadline)
+					long millisToUpdate = update.forced ? 0 : update.register.millisToNextUpdate();
+					if (millisToUpdate <= 0) {
+						// registers exceeding the request budget are deferred
+						// (the most overdue registers expire first)
+						millisToUpdate = acquirePermit(update.register.getRegisterCollection());
+					}
+
+					if (millisToUpdate > 0) {
+						scheduleUpdate(update.register, now + millisToUpdate, update.forced);
+					} else {
+						registers.put(update.register, null);
+						expiredRegisters.add(update.register);
+					}
+				} else {
+					CollectionState cs = update.collectionState;
+					cs.scheduledHint = null;
+					if ((!cs.registers.isEmpty()) && (cs.hintSettings != null)) {
+						long millisToPermit = acquirePermit(cs.registerCollection.get());
+						if (millisToPermit > 0) {
+							cs.scheduledHint = new ScheduledUpdate(null, cs, now + millisToPermit);
+							addToSchedule(cs.scheduledHint);
+						} else {
+							expiredHints.add(cs);
+						}
+					}
+				}
+			}
+		}
+
+		return Long.MAX_VALUE;
+	}
+
+	/**
+	 * Acquires a permit for a request to a register collection with respect to
+	 * rate limits of the collection and its gateway. This method must be
+	 * invoked from thread holding the lock.
+	 * 
+	 * @param registerCollection
+	 *            the register collection.
+	 * @return zero, if the permit was acquired, otherwise time in milliseconds
+	 *         until a permit can be available.
+	 */
+	private long acquirePermit(RegisterCollection registerCollection) {
+		if (registerCollection == null) {
+			return 0;
+		}
+
+		CollectionState collectionState = collectionStates.get(registerCollection);
+		RateLimit collectionLimit = (collectionState != null) ? collectionState.rateLimit : null;
+		RateLimit gatewayLimit = gatewayRateLimits.get(registerCollection.getGateway());
+
+		if ((collectionLimit != null) && !collectionLimit.tryAcquire()) {
+			return collectionLimit.millisToPermit();
+		}
+
+		if ((gatewayLimit != null) && !gatewayLimit.tryAcquire()) {
+			if (collectionLimit != null) {
+				collectionLimit.release();
+			}
+			return gatewayLimit.millisToPermit();
+		}
+
+		return 0;
+	}
+
+	/**
+	 * Schedules next updates of managed registers with respect to their
+	 * update intervals.
+	 * 
+	 * @param registersToSchedule
+	 *            the registers to be scheduled.
+	 */
+	void scheduleRegisters(List<Register> registersToSchedule) {
+		final long now = MonotonicClock.INSTANCE.currentTimeMillis();
+		synchronized (lock) {
+			for (Register register : registersToSchedule) {
+				if (registers.containsKey(register)) {
+					long millisToUpdate = register.millisToNextUpdate();
+					if (phasedRegisters.remove(register)) {
+						// the update following the first update is shifted to
+						// the phase of the register (forced, since the register
+						// is not yet due)
+						long phaseOffset = getPhaseOffset(register);
+						if ((phaseOffset > 0) && (phaseOffset < millisToUpdate)) {
+							scheduleUpdate(register, now + phaseOffset, true);
+							continue;
+						}
+					}
+
+					long delay = 0;
+					if (jitter > 0) {
+						delay = (long) (ThreadLocalRandom.current().nextDouble() * jitter
+								* register.getEffectiveUpdateInterval());
+					}
+
+					scheduleUpdate(register, now + millisToUpdate + delay);
+				}
+			}
+
+			lock.notifyAll();
+		}
+	}
+
+	/**
+	 * Returns the phase offset of a register within its update interval. The
+	 * offset is derived from the identifier of register, hence it is stable
+	 * for the register and offsets of registers with consecutive identifiers
+	 * form a low-discrepancy sequence, i.e., registers with the same update
+	 * interval are spread evenly over the interval.
+	 * 
+	 * @param register
+	 *            the register.
+	 * @return the offset in milliseconds.
+	 */
+	private static long getPhaseOffset(Register register) {
+		// fractional parts of multiples of the golden ratio
+		double phase = (register.getRegisterId() * 0.6180339887498949) % 1.0;
+		return (long) (phase * register.getEffectiveUpdateInterval());
+	}
+
+	/**
+	 * Schedules update of a managed register and invalidates its previously
+	 * scheduled update. This method must be invoked from thread holding the
+	 * lock.
+	 * 
+	 * @param register
+	 *            the register.
+	 * @param deadline
+	 *            the monotonic time in milliseconds when the update expires.
+	 */
+	private void scheduleUpdate(Register register, long deadline) {
+		scheduleUpdate(register, deadline, false);
+	}
+
+	/**
+	 * Schedules update of a managed register and invalidates its previously
+	 * scheduled update. This method must be invoked from thread holding the
+	 * lock.
+	 * 
+	 * @param register
+	 *            the register.
+	 * @param deadline
+	 *            the monotonic time in milliseconds when the update expires.
+	 * @param forced
+	 *            true, if the register is updated at the deadline regardless of
+	 *            its update interval, false otherwise.
+	 */
+	private void scheduleUpdate(Register register, long deadline, boolean forced) {
+		ScheduledUpdate update = new ScheduledUpdate(register, null, deadline, forced);
+		registers.put(register, update);
+		addToSchedule(update);
+	}
+
+	/**
+	 * Schedules hint request of a collection state according to its hint
+	 * settings and invalidates its previously scheduled hint request. This
+	 * method must be invoked from thread holding the lock.
+	 * 
+	 * @param collectionState
+	 *            the collection state.
+	 */
+	private void scheduleHint(CollectionState collectionState) {
+		collectionState.scheduledHint = null;
+		if ((collectionState.hintSettings == null) || collectionState.registers.isEmpty()) {
+			return;
+		}
+
+		collectionState.scheduledHint = new ScheduledUpdate(null, collectionState,
+				collectionState.lastHintTime + collectionState.hintSettings.getInterval());
+		addToSchedule(collectionState.scheduledHint);
+	}
+
+	/**
+	 * Adds a scheduled update to the schedule. If the schedule contains too
+	 * many invalidated updates, they are removed. This method must be invoked
+	 * from thread holding the lock.
+	 * 
+	 * @param update
+	 *            the scheduled update.
+	 */
+	private void addToSchedule(ScheduledUpdate update) {
+		schedule.add(update);
+		if (schedule.size() > 2 * (registers.size() + collectionStates.size()) + 64) {
+			schedule.removeIf(scheduledUpdate -> !isValid(scheduledUpdate));
+		}
+	}
+
+	/**
+	 * Returns whether a scheduled update is valid, i.e., it is the current
+	 * scheduled update of a managed register or a collection state. This method
+	 * must be invoked from thread holding the lock.
+	 * 
+	 * @param update
+	 *            the scheduled update.
+	 * @return true, if the scheduled update is valid, false otherwise.
+	 */
+	private boolean isValid(ScheduledUpdate update) {
+		if (update.register != null) {
+			return registers.get(update.register) == update;
+		} else {
+			return update.collectionState.scheduledHint == update;
+		}
+	}
+
+	/**
+	 * Updates values of registers using background read requests. Registers of
+	 * the same collection and the same type are updated using a batch read. If
+	 * the registry rejects a batch read, the registers are updated one by one
+	 * in order to detect the failing registers. If a batch read fails due to
+	 * other reason (e.g., a timeout), the update of all registers in the batch
+	 * fails.
+	 * 
+	 * @param registersToUpdate
+	 *            the registers to be updated.
+	 */
+	private static void updateRegisters(List<Register> registersToUpdate) {
+		// group registers that can be read by a single batch request
+		Map<RegisterCollection, List<Register>> integerRegisters = new HashMap<>();
+		Map<RegisterCollection, List<Register>> binaryRegisters = new HashMap<>();
+		for (Register register : registersToUpdate) {
+			Map<RegisterCollection, List<Register>> groups = register.isBinaryMode() ? binaryRegisters
+					: integerRegisters;
+			List<Register> group = groups.get(register.getRegisterCollection());
+			if (group == null) {
+				group = new ArrayList<>();
+				groups.put(register.getRegisterCollection(), group);
+			}
+			group.add(register);
+		}
+
+		for (Map.Entry<RegisterCollection, List<Register>> entry : integerRegisters.entrySet()) {
+			List<Register> group = entry.getValue();
+			if (group.size() == 1) {
+				group.get(0).updateValue(RequestPriority.BACKGROUND_REFRESH);
+				continue;
+			}
+
+			Map<Integer, Integer> idPositions = indexRegisterIds(group);
+			int[] values;
+			try {
+				values = entry.getKey().readIntegerRegistersAsync(toArray(idPositions.keySet()), getMaxTimeout(group),
+						RequestPriority.BACKGROUND_REFRESH).get();
+			} catch (Exception e) {
+				updateFailedGroup(group, e);
+				continue;
+			}
+
+			for (Register register : group) {
+				register.updateValue(values[idPositions.get(register.getRegisterId())]);
+			}
+		}
+
+		for (Map.Entry<RegisterCollection, List<Register>> entry : binaryRegisters.entrySet()) {
+			List<Register> group = entry.getValue();
+			if (group.size() == 1) {
+				group.get(0).updateValue(RequestPriority.BACKGROUND_REFRESH);
+				continue;
+			}
+
+			Map<Integer, Integer> idPositions = indexRegisterIds(group);
+			byte[][] values;
+			try {
+				values = entry.getKey().readBinaryRegistersAsync(toArray(idPositions.keySet()), getMaxTimeout(group),
+						RequestPriority.BACKGROUND_REFRESH).get();
+			} catch (Exception e) {
+				updateFailedGroup(group, e);
+				continue;
+			}
+
+			for (Register register : group) {
+				register.updateValue(values[idPositions.get(register.getRegisterId())]);
+			}
+		}
+	}
+
+	/**
+	 * Completes update of registers whose batch read failed. If the registry
+	 * rejected the read, the registers are updated one by one, since the
+	 * rejection can be caused by a single invalid register. Otherwise, the
+	 * update of all registers fails without sending further requests.
+	 * 
+	 * @param group
+	 *            the registers whose batch read failed.
+	 * @param failure
+	 *            the exception that failed the batch read.
+	 */
+	private static void updateFailedGroup(List<Register> group, Throwable failure) {
+		boolean rejected = false;
+		for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+			if (cause instanceof RejectedRequestException) {
+				rejected = true;
+				break;
+			}
+		}
+
+		for (Register register : group) {
+			if (rejected) {
+				register.updateValue(RequestPriority.BACKGROUND_REFRESH);
+			} else {
+				register.updateFailed();
+			}
+		}
+	}
+
+	/**
+	 * Assigns to each distinct identifier of a register in a list of registers
+	 * its position in the list of distinct identifiers. Registers with the
+	 * same identifier share the same position, hence their value is read only
+	 * once.
+	 * 
+	 * @param registers
+	 *            the list of registers.
+	 * @return the map from identifiers of registers to positions. The iteration
+	 *         order of keys corresponds to positions.
+	 */
+	private static Map<Integer, Integer> indexRegisterIds(List<Register> registers) {
+		Map<Integer, Integer> result = new LinkedHashMap<>();
+		for (Register register : registers) {
+			if (!result.containsKey(register.getRegisterId())) {
+				result.put(register.getRegisterId(), result.size());
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Converts a collection of integers to an array.
+	 * 
+	 * @param values
+	 *            the collection of integers.
+	 * @return the array with integers in iteration order of the collection.
+	 */
+	private static int[] toArray(Collection<Integer> values) {
+		int[] result = new int[values.size()];
+		int idx = 0;
+		for (Integer value : values) {
+			result[idx++] = value;
+		}
+
+		return result;
+	}
+
+	/**
+	 * Returns the maximal timeout of requests configured for registers in a
+	 * list of registers.
+	 * 
+	 * @param registers
+	 *            the list of registers.
+	 * @return the timeout in milliseconds, zero or negative value, if there is
+	 *         no timeout.
+	 */
+	private static long getMaxTimeout(List<Register> registers) {
+		long result = Long.MIN_VALUE;
+		for (Register register : registers) {
+			long timeout = register.getConnectionSettings().timeout;
+			if (timeout <= 0) {
+				return timeout;
+			}
+
+			result = Math.max(result, timeout);
+		}
+
+		return result;
+	}
+
+	/**
+	 * Subscribes registers for update. Registers already managed by the
+	 * scheduler are not scheduled again, only their subscriptions are
+	 * counted.
+	 * 
+	 * @param registers
+	 *            the list of registers to be added.
+	 */
+	void addRegisters(Collection<Register> registers) {
+		synchronized (lock) {
+			boolean changed = false;
+			for (Register register : registers) {
+				Integer count = subscriptions.get(register);
+				subscriptions.put(register, (count == null) ? 1 : count + 1);
+				if (count != null) {
+					continue;
+				}
+
+				changed = true;
+
+				// registers that require update are updated immediately, their
+				// next updates are spread in order to avoid bursts of requests
+				long millisToUpdate = register.millisToNextUpdate();
+				if ((millisToUpdate <= 0) && phaseSpreading) {
+					phasedRegisters.add(register);
+				}
+				scheduleUpdate(register, MonotonicClock.INSTANCE.currentTimeMillis() + millisToUpdate);
+
+				// create collection state if necessary
+				CollectionState collectionState = getCollectionState(register.getRegisterCollection());
+
+				// add register to registers of underlying collection state
+				collectionState.addRegister(register);
+				if (collectionState.scheduledHint == null) {
+					scheduleHint(collectionState);
+				}
+			}
+
+			if (changed) {
+				createOrDestroyUpdateThread();
+				lock.notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Unsubscribes registers from update. A register is removed from the
+	 * schedule when no updater manages it.
+	 * 
+	 * @param registers
+	 *            the list of register to be removed.
+	 */
+	void removeRegisters(Collection<Register> registers) {
+		synchronized (lock) {
+			boolean changed = false;
+			for (Register register : registers) {
+				Integer count = subscriptions.get(register);
+				if (count == null) {
+					continue;
+				}
+
+				if (count > 1) {
+					subscriptions.put(register, count - 1);
+					continue;
+				}
+
+				subscriptions.remove(register);
+				this.registers.remove(register);
+				phasedRegisters.remove(register);
+
+				RegisterCollection registerCollection = register.getRegisterCollection();
+				CollectionState collectionState = collectionStates.get(registerCollection);
+				collectionState.removeRegister(register);
+				releaseUnusedCollectionState(registerCollection, collectionState);
+				changed = true;
+			}
+
+			if (changed) {
+				lock.notifyAll();
+				createOrDestroyUpdateThread();
+			}
+		}
+	}
+
+	/**
+	 * Returns whether a register is managed by the scheduler.
+	 * 
+	 * @param register
+	 *            the register.
+	 * @return true, if the register is managed, false otherwise.
+	 */
+	boolean isManaged(Register register) {
+		synchronized (lock) {
+			return registers.containsKey(register);
+		}
+	}
+
+	/**
+	 * Returns the statistics of the scheduler.
+	 * 
+	 * @return the statistics.
+	 */
+	public UpdaterStatistics getStatistics() {
+		return statistics;
+	}
+
+	/**
+	 * Returns the staleness of a managed register, i.e., the time elapsed
+	 * since the last update of its value.
+	 * 
+	 * @param register
+	 *            the register.
+	 * @return the time in milliseconds or -1, if the register is not managed by
+	 *         the scheduler or its value has never been updated.
+	 */
+	public long getStaleness(Register register) {
+		synchronized (lock) {
+			if (!registers.containsKey(register)) {
+				return -1;
+			}
+		}
+
+		long updateTime = register.getUpdateTimeMillis();
+		if (updateTime == Long.MIN_VALUE) {
+			return -1;
+		}
+
+		return Math.max(0, MonotonicClock.INSTANCE.currentTimeMillis() - updateTime);
+	}
+
+	/**
+	 * Returns the number of managed registers that are overdue, i.e., the
+	 * registers that are due for update but have not been updated yet. A
+	 * register that has never been updated is overdue after its first update
+	 * was scheduled. The method scans all managed registers.
+	 * 
+	 * @return the number of overdue registers.
+	 */
+	public int getOverdueRegisterCount() {
+		synchronized (lock) {
+			final long now = MonotonicClock.INSTANCE.currentTimeMillis();
+			int result = 0;
+			for (Map.Entry<Register, ScheduledUpdate> entry : registers.entrySet()) {
+				long dueTime = entry.getKey().getDueTimeMillis();
+				if (dueTime == Long.MIN_VALUE) {
+					dueTime = (entry.getValue() != null) ? entry.getValue().deadline : Long.MIN_VALUE;
+				}
+
+				if (dueTime < now) {
+					result++;
+				}
+			}
+
+			return result;
+		}
+	}
+
+	/**
+	 * Sets the budget of requests to a gateway. Registers (and hint requests)
+	 * exceeding the budget are deferred until a permit is available, the most
+	 * overdue registers are updated first. Each register update and each hint
+	 * request consumes a permit. A rate limit can be shared by multiple
+	 * schedulers.
+	 * 
+	 * @param gateway
+	 *            the gateway.
+	 * @param rateLimit
+	 *            the rate limit or null, if the number of requests should not
+	 *            be limited.
+	 */
+	public void setRateLimit(Gateway gateway, RateLimit rateLimit) {
+		if (gateway == null) {
+			return;
+		}
+
+		synchronized (lock) {
+			if (rateLimit != null) {
+				gatewayRateLimits.put(gateway, rateLimit);
+			} else {
+				gatewayRateLimits.remove(gateway);
+			}
+
+			lock.notifyAll();
+		}
+	}
+
+	/**
+	 * Returns the budget of requests to a gateway.
+	 * 
+	 * @param gateway
+	 *            the gateway.
+	 * @return the rate limit or null, if the number of requests is not
+	 *         limited.
+	 */
+	public RateLimit getRateLimit(Gateway gateway) {
+		synchronized (lock) {
+			return gatewayRateLimits.get(gateway);
+		}
+	}
+
+	/**
+	 * Sets the budget of requests to a register collection. The budget is
+	 * applied in addition to the budget of gateway of the collection.
+	 * 
+	 * @param registerCollection
+	 *            the register collection.
+	 * @param rateLimit
+	 *            the rate limit or null, if the number of requests should not
+	 *            be limited.
+	 * @see #setRateLimit(Gateway, RateLimit)
+	 */
+	public void setRateLimit(RegisterCollection registerCollection, RateLimit rateLimit) {
+		if (registerCollection == null) {
+			return;
+		}
+
+		synchronized (lock) {
+			CollectionState collectionState = collectionStates.get(registerCollection);
+			if ((collectionState == null) && (rateLimit == null)) {
+				return;
+			}
+
+			collectionState = getCollectionState(registerCollection);
+			collectionState.rateLimit = rateLimit;
+			releaseUnusedCollectionState(registerCollection, collectionState);
+			lock.notifyAll();
+		}
+	}
+
+	/**
+	 * Returns the budget of requests to a register collection.
+	 * 
+	 * @param registerCollection
+	 *            the register collection.
+	 * @return the rate limit or null, if the number of requests is not
+	 *         limited.
+	 */
+	public RateLimit getRateLimit(RegisterCollection registerCollection) {
+		synchronized (lock) {
+			CollectionState collectionState = collectionStates.get(registerCollection);
+			return (collectionState != null) ? collectionState.rateLimit : null;
+		}
+	}
+
+	/**
+	 * Returns whether updates of added registers are spread over their update
+	 * intervals.
+	 * 
+	 * @return true, if phase spreading is enabled, false otherwise.
+	 */
+	public boolean isPhaseSpreading() {
+		synchronized (lock) {
+			return phaseSpreading;
+		}
+	}
+
+	/**
+	 * Enables or disables spreading of updates of added registers. Added
+	 * registers that require update are always updated immediately. If
+	 * enabled, the update following the first update of such register is
+	 * scheduled at a phase offset within its update interval derived from the
+	 * identifier of register, so that registers with the same interval are
+	 * not updated in bursts.
+	 * 
+	 * @param phaseSpreading
+	 *            true, to spread updates, false to keep updates of added
+	 *            registers aligned with their first updates.
+	 */
+	public void setPhaseSpreading(boolean phaseSpreading) {
+		synchronized (lock) {
+			this.phaseSpreading = phaseSpreading;
+		}
+	}
+
+	/**
+	 * Returns the maximal random delay of scheduled updates as a fraction of
+	 * update interval.
+	 * 
+	 * @return the fraction of update interval.
+	 */
+	public double getJitter() {
+		synchronized (lock) {
+			return jitter;
+		}
+	}
+
+	/**
+	 * Sets the maximal random delay of scheduled updates as a fraction of
+	 * update interval. Random delays prevent registers with the same update
+	 * interval from drifting into synchronized bursts.
+	 * 
+	 * @param jitter
+	 *            the fraction of update interval between 0 (no jitter) and 1.
+	 */
+	public void setJitter(double jitter) {
+		if ((jitter < 0) || (jitter > 1)) {
+			throw new IllegalArgumentException("Jitter must be between 0 and 1.");
+		}
+
+		synchronized (lock) {
+			this.jitter = jitter;
+		}
+	}
+
+	/**
+	 * Returns whether the platform supports virtual threads, i.e., whether
+	 * the scheduler can use virtual threads.
+	 * 
+	 * @return true, if virtual threads are supported, false otherwise.
+	 */
+	public static boolean isVirtualThreadSupported() {
+		return ThreadSupport.isVirtualThreadSupported();
+	}
+
+	/**
+	 * Returns whether registers are updated in virtual threads.
+	 * 
+	 * @return true, if virtual threads are used, false otherwise.
+	 */
+	public boolean isUsingVirtualThreads() {
+		synchronized (lock) {
+			return virtualThreadExecutor != null;
+		}
+	}
+
+	/**
+	 * Enables or disables updating of registers in virtual threads. If
+	 * virtual threads are used, registers of each register collection are
+	 * updated by an independent virtual thread instead of a platform thread
+	 * shared by all register collections of a gateway. Virtual threads
+	 * require Java 21 or newer.
+	 * 
+	 * @param enabled
+	 *            true, to update registers in virtual threads, false to use
+	 *            platform threads.
+	 * @throws UnsupportedOperationException
+	 *             if virtual threads are not supported by the platform.
+	 */
+	public void setUsingVirtualThreads(boolean enabled) {
+		if (enabled && !ThreadSupport.isVirtualThreadSupported()) {
+			throw new UnsupportedOperationException("Virtual threads require Java 21 or newer.");
+		}
+
+		synchronized (lock) {
+			if (enabled == (virtualThreadExecutor != null)) {
+				return;
+			}
+
+			if (enabled) {
+				virtualThreadExecutor = ThreadSupport.createVirtualThreadExecutor(WORKER_THREAD_NAME);
+			} else {
+				// active workers complete their updates
+				virtualThreadExecutor.shutdown();
+				virtualThreadExecutor = null;
+			}
+		}
+	}
+
+	/**
+	 * Enables and configures method for retrieving update hints on behalf of
+	 * an updater. If multiple updaters use hints for the same register
+	 * collection, the settings with the shortest interval are applied.
+	 * 
+	 * @param subscriber
+	 *            the updater.
+	 * @param registerCollection
+	 *            the remote collection of registers.
+	 * @param settings
+	 *            the settings.
+	 */
+	void useRegistryHints(Object subscriber, RegisterCollection registerCollection,
+			AutoUpdater.HintSettings settings) {
+		synchronized (lock) {
+			CollectionState collectionState = getCollectionState(registerCollection);
+			collectionState.hintSubscriptions.put(subscriber, settings);
+			collectionState.updateHintSettings();
+			collectionState.unconfirmedRegisterIds.clear();
+			scheduleHint(collectionState);
+
+			lock.notifyAll();
+		}
+	}
+
+	/**
+	 * Disables registry hints of an updater when updating registers from given
+	 * register collection.
+	 * 
+	 * @param subscriber
+	 *            the updater.
+	 * @param registerCollection
+	 *            the remote collection of registers.
+	 */
+	void disableRegistryHints(Object subscriber, RegisterCollection registerCollection) {
+		synchronized (lock) {
+			CollectionState collectionState = collectionStates.get(registerCollection);
+			if (collectionState != null) {
+				collectionState.hintSubscriptions.remove(subscriber);
+				collectionState.updateHintSettings();
+				collectionState.unconfirmedRegisterIds.clear();
+				scheduleHint(collectionState);
+				releaseUnusedCollectionState(registerCollection, collectionState);
+			}
+
+			lock.notifyAll();
+		}
+	}
+
+	/**
+	 * Returns the state of a register collection. If the collection has no
+	 * state, a new state is created and the scheduler subscribes to change
+	 * notices of the collection. This method must be invoked from thread
+	 * holding the lock.
+	 * 
+	 * @param registerCollection
+	 *            the register collection.
+	 * @return the collection state.
+	 */
+	private CollectionState getCollectionState(RegisterCollection registerCollection) {
+		CollectionState collectionState = collectionStates.get(registerCollection);
+		if (collectionState == null) {
+			collectionState = new CollectionState(registerCollection);
+			collectionStates.put(registerCollection, collectionState);
+			registerCollection.addChangeNoticeListener(changeNoticeListener);
+		}
+
+		return collectionState;
+	}
+
+	/**
+	 * Removes the state of a register collection, if the collection has no
+	 * managed registers, hints, and rate limit. This method must be invoked
+	 * from thread holding the lock.
+	 * 
+	 * @param registerCollection
+	 *            the register collection.
+	 * @param collectionState
+	 *            the state of the register collection.
+	 */
+	private void releaseUnusedCollectionState(RegisterCollection registerCollection,
+			CollectionState collectionState) {
+		if (collectionState.registers.isEmpty() && (collectionState.hintSettings == null)
+				&& (collectionState.rateLimit == null)) {
+			collectionStates.remove(registerCollection);
+			registerCollection.removeChangeNoticeListener(changeNoticeListener);
+		}
+	}
+
+	/**
+	 * Handles a change notice sent by a registry. Managed registers with
+	 * notified identifiers are dispatched for update immediately, a notice
+	 * without identifiers of registers expedites the next hint request.
+	 * Registers that exceed the request budget are updated as soon as a permit
+	 * is available, registers that are being updated are skipped.
+	 * 
+	 * @param registerCollection
+	 *            the register collection whose registers have been changed.
+	 * @param registerIds
+	 *            the identifiers of changed registers.
+	 */
+	private void handleChangeNotice(RegisterCollection registerCollection, int[] registerIds) {
+		synchronized (lock) {
+			CollectionState collectionState = collectionStates.get(registerCollection);
+			if (collectionState == null) {
+				return;
+			}
+
+			if (registerIds.length == 0) {
+				if ((collectionState.hintSettings != null) && !collectionState.registers.isEmpty()) {
+					collectionState.scheduledHint = new ScheduledUpdate(null, collectionState,
+							MonotonicClock.INSTANCE.currentTimeMillis());
+					addToSchedule(collectionState.scheduledHint);
+					lock.notifyAll();
+				}
+
+				return;
+			}
+
+			final long now = MonotonicClock.INSTANCE.currentTimeMillis();
+			boolean deferred = false;
+			List<Register> notifiedRegisters = new ArrayList<>();
+			for (int registerId : registerIds) {
+				List<Register> registersWithId = collectionState.registers.get(registerId);
+				if (registersWithId == null) {
+					continue;
+				}
+
+				for (Register register : registersWithId) {
+					// registers without scheduled update are already being
+					// updated
+					if (registers.get(register) == null) {
+						continue;
+					}
+
+					// registers exceeding the request budget are deferred
+					// until a permit is available
+					long millisToPermit = acquirePermit(registerCollection);
+					if (millisToPermit > 0) {
+						scheduleUpdate(register, now + millisToPermit, true);
+						deferred = true;
+					} else {
+						registers.put(register, null);
+						notifiedRegisters.add(register);
+					}
+				}
+			}
+
+			if (!notifiedRegisters.isEmpty()) {
+				dispatchUpdates(notifiedRegisters, Collections.<CollectionState> emptyList());
+			}
+
+			if (deferred) {
+				lock.notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Creates or destroys the update thread. This method must be invoked from
+	 * thread holding the lock.
+	 */
+	private void createOrDestroyUpdateThread() {
+		// stop update thread, if the list of managed registers is empty
+		if (registers.isEmpty() && (updateThread != null)) {
+			updateThread.interrupt();
+			updateThread = null;
+			return;
+		}
+
+		// create update thread, if required.
+		if ((!registers.isEmpty()) && (updateThread == null)) {
+			updateThread = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					mainLoop();
+				}
+			}, THREAD_NAME);
+			updateThread.setDaemon(true);
+			updateThread.start();
+		}
+	}
+}
@@ -0,0 +1,150 @@
+package com.gboxsw.acpmod.registry;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Statistics of an updater of registers. The statistics allow to detect
+ * over-subscribed gateways, i.e., gateways that are not able to update
+ * registers in their update intervals. All methods are implemented as
+ * thread-safe, values read during concurrent updates are weakly consistent.
+ */
+public class UpdaterStatistics {
+
+	/**
+	 * Histogram of delays between times when registers became due for update
+	 * and start of their update.
+	 */
+	private LatencyHistogram schedulingLags = new LatencyHistogram();
+
+	/**
+	 * Histogram of durations of iterations of the scheduling loop.
+	 */
+	private LatencyHistogram loopIterations = new LatencyHistogram();
+
+	/**
+	 * Total time in nanoseconds spent by scheduling of updates.
+	 */
+	private final LongAdder schedulingTime = new LongAdder();
+
+	/**
+	 * Total time in nanoseconds spent by workers blocked in requests.
+	 */
+	private final LongAdder requestTime = new LongAdder();
+
+	/**
+	 * Number of updated registers.
+	 */
+	private final LongAdder updatedRegisters = new LongAdder();
+
+	/**
+	 * Records an iteration of the scheduling loop.
+	 * 
+	 * @param nanos
+	 *            the duration of iteration in nanoseconds.
+	 */
+	void recordLoopIteration(long nanos) {
+		loopIterations.record(nanos / 1000);
+		schedulingTime.add(nanos);
+	}
+
+	/**
+	 * Records delay of an update of register after the register became due.
+	 * 
+	 * @param lagMillis
+	 *            the delay in milliseconds.
+	 */
+	void recordSchedulingLag(long lagMillis) {
+		schedulingLags.record(lagMillis * 1000);
+	}
+
+	/**
+	 * Records execution of requests by a worker.
+	 * 
+	 * @param registers
+	 *            the number of updated registers.
+	 * @param nanos
+	 *            the time spent in requests in nanoseconds.
+	 */
+	void recordRequests(int registers, long nanos) {
+		updatedRegisters.add(registers);
+		requestTime.add(nanos);
+	}
+
+	/**
+	 * Resets statistics. Values recorded concurrently with reset may or may
+	 * not be preserved.
+	 */
+	public void reset() {
+		schedulingLags.reset();
+		loopIterations.reset();
+		schedulingTime.reset();
+		requestTime.reset();
+		updatedRegisters.reset();
+	}
+
+	/**
+	 * Returns the histogram of delays between times when registers became
+	 * due for update and start of their update. Registers updated due to a
+	 * change hint and registers that have never been updated are not
+	 * included.
+	 * 
+	 * @return the snapshot of histogram with delays in microseconds.
+	 */
+	public LatencyHistogram getSchedulingLags() {
+		return schedulingLags.createSnapshot();
+	}
+
+	/**
+	 * Returns the histogram of durations of iterations of the scheduling loop,
+	 * i.e., the cost of finding expired registers and dispatching them to
+	 * workers.
+	 * 
+	 * @return the snapshot of histogram with durations in microseconds.
+	 */
+	public LatencyHistogram getLoopIterations() {
+		return loopIterations.createSnapshot();
+	}
+
+	/**
+	 * Returns the total time spent by scheduling of updates.
+	 * 
+	 * @return the time in microseconds.
+	 */
+	public long getSchedulingTime() {
+		return schedulingTime.sum() / 1000;
+	}
+
+	/**
+	 * Returns the total time spent by workers blocked in requests. The time
+	 * of workers running in parallel is summed.
+	 * 
+	 * @return the time in microseconds.
+	 */
+	public long getRequestTime() {
+		return requestTime.sum() / 1000;
+	}
+
+	/**
+	 * Returns the number of updated registers.
+	 * 
+	 * @return the number of registers.
+	 */
+	public long getUpdatedRegisters() {
+		return updatedRegisters.sum();
+	}
+
+	/**
+	 * Returns clone of statistics at given time (snapshot).
+	 * 
+	 * @return snapshot of current statistics.
+	 */
+	public UpdaterStatistics createSnapshot() {
+		UpdaterStatistics result = new UpdaterStatistics();
+		result.schedulingLags = schedulingLags.createSnapshot();
+		result.loopIterations = loopIterations.createSnapshot();
+		result.schedulingTime.add(schedulingTime.sum());
+		result.requestTime.add(requestTime.sum());
+		result.updatedRegisters.add(updatedRegisters.sum());
+		return result;
+	}
+}
@@ -78,6 +78,19 @@ public class XmlLoader {
 		 */
 		public HintSettings hintSettings;
 
+		/**
+		 * Budget of requests to the collection or null, if the number of
+		 * requests is not limited.
+		 */
+		public RateLimit rateLimit;
+
+		/**
+		 * Budget of requests to the gateway of the collection or null, if the
+		 * number of requests is not limited. The rate limit is shared by all
+		 * collections of the gateway.
+		 */
+		public RateLimit gatewayRateLimit;
+
 		/**
 		 * Map with all properties specified for given collection of registers.
 		 */
@@ -332,6 +345,8 @@ public class XmlLoader {
 
 			// create gateway
 			Gateway gateway = gatewayFactory.createGateway(settingsElement);
+			RateLimit gatewayRateLimit = createRateLimit(root.getAttribute("rate-limit"),
+					root.getAttribute("rate-burst"));
 
 			// load collections
 			for (int i = 0; i < children.getLength(); i++) {
@@ -390,9 +405,23 @@ public class XmlLoader {
 							hintSettings.setStrategy(strategy);
 						}
 
+						// handle attributes of multiple hints
+						if (collectionProperties.containsKey("max-hints")) {
+							hintSettings.setMaxHints(Integer.parseInt(collectionProperties.get("max-hints")));
+						}
+
+						if (collectionProperties.containsKey("hint-values")) {
+							hintSettings.setHintValues(Boolean.parseBoolean(collectionProperties.get("hint-values")));
+						}
+
 						info.hintSettings = hintSettings;
 					}
 
+					// configure budget of requests
+					info.rateLimit = createRateLimit(collectionProperties.get("rate-limit"),
+							collectionProperties.get("rate-burst"));
+					info.gatewayRateLimit = gatewayRateLimit;
+
 					info.properties.putAll(collectionProperties);
 
 					if (collections.containsKey(collectionId)) {
@@ -446,6 +475,30 @@ public class XmlLoader {
 		}
 	}
 
+	/**
+	 * Creates rate limit according to attributes in xml configuration.
+	 * 
+	 * @param rate
+	 *            the value of attribute with number of requests per second.
+	 * @param burst
+	 *            the value of attribute with maximal number of requests
+	 *            executed without waiting. If the burst is not specified, it
+	 *            is derived from the rate.
+	 * @return the rate limit or null, if the rate is not specified.
+	 */
+	private static RateLimit createRateLimit(String rate, String burst) {
+		if ((rate == null) || rate.trim().isEmpty()) {
+			return null;
+		}
+
+		double requestsPerSecond = Double.parseDouble(rate.trim());
+		if ((burst == null) || burst.trim().isEmpty()) {
+			return new RateLimit(requestsPerSecond, (int) Math.max(1, Math.ceil(requestsPerSecond)));
+		}
+
+		return new RateLimit(requestsPerSecond, Integer.parseInt(burst.trim()));
+	}
+
 	/**
 	 * Creates registers according to definitions of registers in an xml
 	 * element.
@@ -595,20 +648,44 @@ public class XmlLoader {
 		// optional attribute update period in milliseconds, default 1000 (1
 		// second)
 		try {
-			String updateInterval = xmlConfiguration.getAttribute("update-interval").trim();
-			long multiplicator = 1;
-			if (updateInterval.endsWith("s")) {
-				multiplicator = 1000;
-				updateInterval = updateInterval.substring(0, updateInterval.length() - 1).trim();
-			}
-			result.setUpdateInterval(Math.round(Double.parseDouble(updateInterval) * multiplicator));
+			result.setUpdateInterval(parseInterval(xmlConfiguration.getAttribute("update-interval")));
 		} catch (Exception ignore) {
 
 		}
 
+		// optional attributes with bounds of adaptive update interval
+		String minUpdateInterval = xmlConfiguration.getAttribute("min-update-interval").trim();
+		String maxUpdateInterval = xmlConfiguration.getAttribute("max-update-interval").trim();
+		if (!minUpdateInterval.isEmpty() || !maxUpdateInterval.isEmpty()) {
+			long minInterval = minUpdateInterval.isEmpty() ? result.getUpdateInterval()
+					: parseInterval(minUpdateInterval);
+			long maxInterval = maxUpdateInterval.isEmpty() ? result.getUpdateInterval()
+					: parseInterval(maxUpdateInterval);
+			result.setAdaptiveUpdateInterval(minInterval, maxInterval);
+		}
+
 		return result;
 	}
 
+	/**
+	 * Parses value of an attribute with interval. The interval is given in
+	 * milliseconds, or in seconds, if the value ends with suffix "s".
+	 * 
+	 * @param interval
+	 *            the value of attribute.
+	 * @return the interval in milliseconds.
+	 */
+	private static long parseInterval(String interval) {
+		interval = interval.trim();
+		long multiplicator = 1;
+		if (interval.endsWith("s")) {
+			multiplicator = 1000;
+			interval = interval.substring(0, interval.length() - 1).trim();
+		}
+
+		return Math.round(Double.parseDouble(interval) * multiplicator);
+	}
+
 	/**
 	 * Creates a new register codec from an xml configuration.
 	 * 
@@ -0,0 +1,38 @@
+package com.gboxsw.acpmod.registry;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Support of threads that depends on version of the Java platform. This
+ * implementation is used on Java 21 and newer.
+ */
+final class ThreadSupport {
+
+	/**
+	 * Private constructor (no instances are allowed).
+	 */
+	private ThreadSupport() {
+
+	}
+
+	/**
+	 * Returns whether virtual threads are supported by the platform.
+	 * 
+	 * @return true, if virtual threads are supported, false otherwise.
+	 */
+	static boolean isVirtualThreadSupported() {
+		return true;
+	}
+
+	/**
+	 * Creates executor that runs each task in a new virtual thread.
+	 * 
+	 * @param name
+	 *            the name of threads.
+	 * @return the executor.
+	 */
+	static ExecutorService createVirtualThreadExecutor(String name) {
+		return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(name).factory());
+	}
+}
@@ -0,0 +1,133 @@
+package com.gboxsw.acpmod.registry;
+
+import static org.junit.Assert.*;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests of splitting batch requests in {@link GepGateway} so that requests and
+ * responses fit into a single message.
+ */
+public class GepGatewayBatchTest {
+
+	private static final int REGISTRY_ID = 1;
+
+	private static final long TIMEOUT = 1000;
+
+	private SimulatedRegistry registry;
+
+	private GepGateway gateway;
+
+	private RegisterCollection registers;
+
+	@Before
+	public void setUp() {
+		registry = new SimulatedRegistry(REGISTRY_ID);
+		gateway = new GepGateway(registry, 0, true);
+		gateway.start();
+		registers = gateway.getRegisterCollection(REGISTRY_ID);
+	}
+
+	@After
+	public void tearDown() {
+		gateway.stop();
+	}
+
+	@Test
+	public void testReadBatchFitsWorstCaseResponse() {
+		// response code and 5 values of at most 5 bytes fit into 30 bytes
+		assertEquals(1, countReadRequests(createRegisters(1, 5)));
+		assertEquals(2, countReadRequests(createRegisters(1, 6)));
+		assertEquals(2, countReadRequests(createRegisters(1, 10)));
+		assertEquals(3, countReadRequests(createRegisters(1, 11)));
+	}
+
+	@Test
+	public void testReadBatchRespectsMaxRegistersInBatch() {
+		gateway.setMaxRegistersInBatch(2);
+		assertEquals(1, countReadRequests(createRegisters(1, 2)));
+		assertEquals(2, countReadRequests(createRegisters(1, 3)));
+	}
+
+	@Test
+	public void testWriteBatchRespectsMaxRegistersInBatch() {
+		assertEquals(1, countWriteRequests(createRegisters(1, 8), 1));
+		assertEquals(2, countWriteRequests(createRegisters(1, 9), 1));
+	}
+
+	@Test
+	public void testWriteBatchFitsIntoMessage() {
+		gateway.setMaxRegistersInBatch(100);
+
+		// request code and 14 pairs of 1-byte identifier and 1-byte value
+		// fit into 30 bytes
+		assertEquals(1, countWriteRequests(createRegisters(1, 14), 1));
+		assertEquals(2, countWriteRequests(createRegisters(1, 15), 1));
+
+		// 2-byte identifiers and 5-byte values
+		assertEquals(1, countWriteRequests(createRegisters(200, 4), Integer.MAX_VALUE));
+		assertEquals(2, countWriteRequests(createRegisters(200, 5), Integer.MAX_VALUE));
+	}
+
+	/**
+	 * Creates integer registers with consecutive identifiers in the simulated
+	 * registry. Value of each register is its identifier.
+	 * 
+	 * @param firstRegisterId
+	 *            the identifier of the first register.
+	 * @param count
+	 *            the number of registers.
+	 * @return the identifiers of created registers.
+	 */
+	private int[] createRegisters(int firstRegisterId, int count) {
+		int[] registerIds = new int[count];
+		for (int i = 0; i < count; i++) {
+			registerIds[i] = firstRegisterId + i;
+			registry.setIntegerRegister(registerIds[i], registerIds[i]);
+		}
+
+		return registerIds;
+	}
+
+	/**
+	 * Reads registers, checks their values and returns the number of requests
+	 * received by the simulated registry.
+	 * 
+	 * @param registerIds
+	 *            the identifiers of registers.
+	 * @return the number of received requests.
+	 */
+	private long countReadRequests(int[] registerIds) {
+		long requestsBefore = registry.getReceivedRequests();
+		assertArrayEquals(registerIds, registers.readIntegerRegisters(registerIds, TIMEOUT));
+		return registry.getReceivedRequests() - requestsBefore;
+	}
+
+	/**
+	 * Writes the same value to registers, checks their values and returns the
+	 * number of requests received by the simulated registry.
+	 * 
+	 * @param registerIds
+	 *            the identifiers of registers.
+	 * @param value
+	 *            the value.
+	 * @return the number of received requests.
+	 */
+	private long countWriteRequests(int[] registerIds, int value) {
+		int[] values = new int[registerIds.length];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = value;
+		}
+
+		long requestsBefore = registry.getReceivedRequests();
+		registers.writeIntegerRegisters(registerIds, values, TIMEOUT);
+		long requests = registry.getReceivedRequests() - requestsBefore;
+		for (int registerId : registerIds) {
+			assertEquals(value, registry.getIntegerRegister(registerId));
+		}
+
+		return requests;
+	}
+}
@@ -0,0 +1,118 @@
+package com.gboxsw.acpmod.registry;
+
+import static org.junit.Assert.*;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests of requests for multiple change hints in {@link GepGateway}.
+ */
+public class GepGatewayChangeHintTest {
+
+	private static final int REGISTRY_ID = 1;
+
+	private static final long TIMEOUT = 1000;
+
+	private SimulatedRegistry registry;
+
+	private GepGateway gateway;
+
+	private RegisterCollection registers;
+
+	@Before
+	public void setUp() {
+		registry = new SimulatedRegistry(REGISTRY_ID);
+		registry.setIntegerRegister(1, 5);
+		registry.setIntegerRegister(2, -1000);
+		registry.setIntegerRegister(200, 70000);
+		registry.setBinaryRegister(3, new byte[] { 'a', 'b', 'c' });
+		gateway = new GepGateway(registry, 0, true);
+		gateway.start();
+		registers = gateway.getRegisterCollection(REGISTRY_ID);
+	}
+
+	@After
+	public void tearDown() {
+		gateway.stop();
+	}
+
+	@Test
+	public void testHintsWithoutValues() {
+		ChangeHint[] hints = registers.getChangeHints(new int[0], 16, false, TIMEOUT);
+		assertEquals(4, hints.length);
+		int[] expectedIds = { 1, 2, 200, 3 };
+		for (int i = 0; i < hints.length; i++) {
+			assertEquals(expectedIds[i], hints[i].getRegisterId());
+			assertFalse(hints[i].hasValue());
+		}
+
+		// confirmed registers are no longer hinted
+		hints = registers.getChangeHints(new int[] { 1, 200 }, 16, false, TIMEOUT);
+		assertEquals(2, hints.length);
+		assertEquals(2, hints[0].getRegisterId());
+		assertEquals(3, hints[1].getRegisterId());
+	}
+
+	@Test
+	public void testHintsWithValues() {
+		ChangeHint[] hints = registers.getChangeHints(new int[0], 16, true, TIMEOUT);
+		assertEquals(4, hints.length);
+		assertEquals(1, hints[0].getRegisterId());
+		assertEquals(Integer.valueOf(5), hints[0].getIntegerValue());
+		assertEquals(2, hints[1].getRegisterId());
+		assertEquals(Integer.valueOf(-1000), hints[1].getIntegerValue());
+		assertEquals(200, hints[2].getRegisterId());
+		assertEquals(Integer.valueOf(70000), hints[2].getIntegerValue());
+		assertEquals(3, hints[3].getRegisterId());
+		assertArrayEquals(new byte[] { 'a', 'b', 'c' }, hints[3].getBinaryValue());
+
+		// hinted values are marked as read
+		assertEquals(0, registers.getChangeHints(new int[0], 16, true, TIMEOUT).length);
+	}
+
+	@Test
+	public void testMaxHints() {
+		ChangeHint[] hints = registers.getChangeHints(new int[0], 2, false, TIMEOUT);
+		assertEquals(2, hints.length);
+		assertEquals(1, hints[0].getRegisterId());
+		assertEquals(2, hints[1].getRegisterId());
+	}
+
+	@Test
+	public void testNoChangedRegisters() {
+		registers.getChangeHints(new int[0], 16, true, TIMEOUT);
+		registry.setIntegerRegister(2, 7);
+		ChangeHint[] hints = registers.getChangeHints(new int[0], 16, true, TIMEOUT);
+		assertEquals(1, hints.length);
+		assertEquals(2, hints[0].getRegisterId());
+		assertEquals(Integer.valueOf(7), hints[0].getIntegerValue());
+		assertEquals(0, registers.getChangeHints(new int[0], 16, true, TIMEOUT).length);
+	}
+
+	@Test
+	public void testConfirmationsFitIntoMessage() {
+		// request header has 3 bytes, 27 confirmations with 1-byte
+		// identifiers or 13 confirmations with 2-byte identifiers fit into 30
+		// bytes
+		int[] shortIds = new int[40];
+		int[] longIds = new int[40];
+		for (int i = 0; i < shortIds.length; i++) {
+			shortIds[i] = i + 1;
+			longIds[i] = i + 200;
+		}
+
+		assertEquals(27, registers.countConfirmableRegisters(shortIds));
+		assertEquals(13, registers.countConfirmableRegisters(longIds));
+		assertEquals(2, registers.countConfirmableRegisters(new int[] { 1, 200 }));
+
+		// confirmations that do not fit into the request are not sent
+		registry.setIntegerRegister(213, 1);
+		registers.getChangeHints(longIds, 16, false, TIMEOUT);
+		ChangeHint[] hints = registers.getChangeHints(new int[0], 16, false, TIMEOUT);
+		assertEquals(4, hints.length);
+		assertEquals(3, hints[2].getRegisterId());
+		assertEquals(213, hints[3].getRegisterId());
+	}
+}
@@ -0,0 +1,82 @@
+package com.gboxsw.acpmod.registry;
+
+import static org.junit.Assert.*;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests of matching requests and responses by tags in {@link GepGateway}.
+ */
+public class GepGatewayRequestTest {
+
+	private static final int REGISTRY_ID = 1;
+
+	private static final long TIMEOUT = 1000;
+
+	private SimulatedRegistry registry;
+
+	private GepGateway gateway;
+
+	private RegisterCollection registers;
+
+	@Before
+	public void setUp() {
+		registry = new SimulatedRegistry(REGISTRY_ID);
+		registry.setIntegerRegister(1, 10);
+		registry.setIntegerRegister(2, 20);
+		gateway = new GepGateway(registry, 0, true);
+		gateway.start();
+		registers = gateway.getRegisterCollection(REGISTRY_ID);
+	}
+
+	@After
+	public void tearDown() {
+		gateway.stop();
+	}
+
+	@Test
+	public void testTagsAreReused() {
+		// more requests than available tags, each response must match its
+		// request
+		for (int i = 0; i < 1200; i++) {
+			int registerId = (i % 2) + 1;
+			assertEquals(registerId * 10, registers.readIntegerRegister(registerId, TIMEOUT));
+		}
+	}
+
+	@Test
+	public void testTimedOutRequestFails() {
+		registry.setLatency(300, 300);
+		long start = System.currentTimeMillis();
+		try {
+			registers.readIntegerRegister(1, 50);
+			fail("Request without response must fail.");
+		} catch (RuntimeException expected) {
+			// request timed out
+		}
+
+		assertTrue(System.currentTimeMillis() - start < 300);
+	}
+
+	@Test
+	public void testLateReplyIsIgnored() throws InterruptedException {
+		registry.setLatency(300, 300);
+		try {
+			registers.readIntegerRegister(1, 50);
+			fail("Request without response must fail.");
+		} catch (RuntimeException expected) {
+			// request timed out, the reply arrives later
+		}
+
+		// requests sent before and after arrival of the late reply receive
+		// their own responses
+		registry.setLatency(0, 0);
+		assertEquals(20, registers.readIntegerRegister(2, TIMEOUT));
+		Thread.sleep(400);
+		for (int i = 0; i < 10; i++) {
+			assertEquals(20, registers.readIntegerRegister(2, TIMEOUT));
+		}
+	}
+}
@@ -55,6 +55,13 @@ public class App {
 				if (collectionConfig.hintSettings != null) {
 					controller.useRegistryHints(collectionConfig.registerCollection, collectionConfig.hintSettings);
 				}
+				if (collectionConfig.rateLimit != null) {
+					controller.setRateLimit(collectionConfig.registerCollection, collectionConfig.rateLimit);
+				}
+				if (collectionConfig.gatewayRateLimit != null) {
+					controller.setRateLimit(collectionConfig.registerCollection.getGateway(),
+							collectionConfig.gatewayRateLimit);
+				}
 			}
 		}
 
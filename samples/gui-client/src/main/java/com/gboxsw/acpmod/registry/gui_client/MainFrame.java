@@ -5,6 +5,7 @@ import java.io.*;
 import javax.swing.*;
 import com.gboxsw.acpmod.registry.*;
 import java.util.*;
+import java.util.concurrent.Executor;
 
 import java.awt.BorderLayout;
 import java.awt.Point;
@@ -34,6 +35,17 @@ class MainFrame extends JFrame {
 		 */
 		private final Map<Register, Integer> registerIndices = new HashMap<Register, Integer>();
 
+		/**
+		 * Dispatcher delivering coalesced changes of registers in the event
+		 * dispatch thread.
+		 */
+		private final ChangeDispatcher changeDispatcher = new ChangeDispatcher(new Executor() {
+			@Override
+			public void execute(Runnable command) {
+				SwingUtilities.invokeLater(command);
+			}
+		});
+
 		/**
 		 * Sets displayed registers.
 		 * 
@@ -54,6 +66,7 @@ class MainFrame extends JFrame {
 
 				// associate change listener
 				for (Register r : registers) {
+					r.setChangeDispatcher(changeDispatcher);
 					r.setChangeListener(this);
 				}
 			}
@@ -115,15 +128,11 @@ class MainFrame extends JFrame {
 
 		@Override
 		public void onChange(final Register register) {
-			SwingUtilities.invokeLater(new Runnable() {
-				@Override
-				public void run() {
-					Integer registerIdx = registerIndices.get(register);
-					if (registerIdx != null) {
-						fireTableRowsUpdated(registerIdx, registerIdx);
-					}
-				}
-			});
+			// invoked in the event dispatch thread by the change dispatcher
+			Integer registerIdx = registerIndices.get(register);
+			if (registerIdx != null) {
+				fireTableRowsUpdated(registerIdx, registerIdx);
+			}
 		}
 	}
 
@@ -349,6 +358,12 @@ class MainFrame extends JFrame {
 			if (cfg.hintSettings != null) {
 				autoUpdater.useRegistryHints(cfg.registerCollection, cfg.hintSettings);
 			}
+			if (cfg.rateLimit != null) {
+				autoUpdater.setRateLimit(cfg.registerCollection, cfg.rateLimit);
+			}
+			if (cfg.gatewayRateLimit != null) {
+				autoUpdater.setRateLimit(cfg.registerCollection.getGateway(), cfg.gatewayRateLimit);
+			}
 		}
 
 		gatewayRunning = true;